@@ -0,0 +1,164 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.Ray;
+import com.badlogic.gdx.utils.Array;
+import de.macbury.expanse.core.entities.components.PositionComponent;
+import de.macbury.expanse.core.octree.LevelOctree;
+import de.macbury.expanse.core.octree.Octree;
+import de.macbury.expanse.core.octree.query.FrustrumOctreeQuery;
+import de.macbury.expanse.core.octree.query.PointOctreeQuery;
+import de.macbury.expanse.core.octree.query.RayOctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures hot paths of {@link LevelOctree} for each octree backend. Run with: gradlew benchmark:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelOctreeBenchmark implements OctreeVisitor<PositionComponent> {
+  private final static int QUERY_VARIANTS = 64;
+  /**
+   * Objects moved before each query in {@link LevelOctreeBenchmark#relocate()}
+   */
+  private final static int RELOCATIONS_PER_FRAME = 100;
+
+  @Param({ "1000", "10000", "100000" })
+  public int population;
+
+  @Param({ OctreePopulation.TREE, OctreePopulation.LOOSE, OctreePopulation.FLAT, OctreePopulation.GRID })
+  public String backend;
+
+  private OctreePopulation generator;
+  private LevelOctree<PositionComponent> octree;
+  private Octree<PositionComponent> dynamicOctree;
+  private Array<PositionComponent> components;
+  private FrustrumOctreeQuery[] frustrumQueries;
+  private PointOctreeQuery[] pointQueries;
+  private RayOctreeQuery[] rayQueries;
+  private int cursor;
+  private int queryCursor;
+  private int found;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    generator     = new OctreePopulation(population);
+    components    = generator.create(population);
+    octree        = OctreePopulation.levelOctree(backend);
+    dynamicOctree = octree.getDynamicOctree();
+    for (int i = 0; i < components.size; i++) {
+      dynamicOctree.insert(components.get(i));
+    }
+
+    frustrumQueries = new FrustrumOctreeQuery[QUERY_VARIANTS];
+    pointQueries    = new PointOctreeQuery[QUERY_VARIANTS];
+    rayQueries      = new RayOctreeQuery[QUERY_VARIANTS];
+    Vector3 point   = new Vector3();
+    for (int i = 0; i < QUERY_VARIANTS; i++) {
+      PerspectiveCamera camera = generator.randomCamera();
+      frustrumQueries[i] = new FrustrumOctreeQuery();
+      frustrumQueries[i].setFrustum(camera.frustum);
+
+      pointQueries[i] = new PointOctreeQuery();
+      pointQueries[i].setPoint(components.get(generator.getRandom().nextInt(components.size)));
+
+      rayQueries[i] = new RayOctreeQuery();
+      rayQueries[i].setRay(new Ray(camera.position, generator.randomPoint(point).sub(camera.position).nor()));
+    }
+    cursor      = 0;
+    queryCursor = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    octree.dispose();
+    components.clear();
+  }
+
+  /**
+   * Clears dynamic octree and inserts whole population
+   * @return
+   */
+  @Benchmark
+  public int insertAll() {
+    octree.setBounds(OctreePopulation.WORLD_BOUNDS);
+    for (int i = 0; i < components.size; i++) {
+      dynamicOctree.insert(components.get(i));
+    }
+    return dynamicOctree.collapse() ? 0 : components.size;
+  }
+
+  /**
+   * Removes one object and inserts it back, so population stays the same between invocations
+   * @return
+   */
+  @Benchmark
+  public boolean removeAndInsert() {
+    PositionComponent component = nextComponent();
+    boolean removed             = dynamicOctree.remove(component);
+    dynamicOctree.insert(component);
+    return removed;
+  }
+
+  /**
+   * Moves some objects to random position, like {@link de.macbury.expanse.core.entities.systems.WorldOctreeSystem} does for moving entities
+   * in one frame, then runs query so cost of updating octree structure is measured too
+   * @return
+   */
+  @Benchmark
+  public int relocate() {
+    for (int i = 0; i < RELOCATIONS_PER_FRAME; i++) {
+      PositionComponent component = nextComponent();
+      generator.moveRandomly(component);
+      dynamicOctree.relocate(component);
+    }
+    found = 0;
+    octree.query(pointQueries[nextQuery()], this);
+    return found;
+  }
+
+  @Benchmark
+  public int frustrumQuery() {
+    found = 0;
+    octree.query(frustrumQueries[nextQuery()], this);
+    return found;
+  }
+
+  @Benchmark
+  public int pointQuery() {
+    found = 0;
+    octree.query(pointQueries[nextQuery()], this);
+    return found;
+  }
+
+  @Benchmark
+  public int rayQuery() {
+    found = 0;
+    octree.query(rayQueries[nextQuery()], this);
+    return found;
+  }
+
+  @Override
+  public boolean visit(PositionComponent object) {
+    found++;
+    return true;
+  }
+
+  private PositionComponent nextComponent() {
+    cursor = (cursor + 1) % components.size;
+    return components.get(cursor);
+  }
+
+  private int nextQuery() {
+    queryCursor = (queryCursor + 1) % QUERY_VARIANTS;
+    return queryCursor;
+  }
+}
@@ -0,0 +1,129 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import de.macbury.expanse.core.entities.components.PositionComponent;
+import de.macbury.expanse.core.octree.LevelOctree;
+import de.macbury.expanse.core.octree.Octree;
+import de.macbury.expanse.core.octree.SpatialGrid;
+import de.macbury.expanse.core.octree.query.BoundingBoxOctreeQuery;
+import de.macbury.expanse.core.octree.query.FrustrumOctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares octree backends with {@link SpatialGrid} for robots that move every frame. Run with: gradlew benchmark:jmh -Pjmh.include=MovingRobots
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovingRobotsBenchmark implements OctreeVisitor<PositionComponent> {
+  private final static float ROBOT_SPEED     = 0.25f;
+  private final static float NEIGHBOUR_RANGE = 8f;
+  private final static int NEIGHBOUR_QUERIES = 100;
+
+  @Param({ "10000" })
+  public int robots;
+
+  @Param({ OctreePopulation.TREE, OctreePopulation.LOOSE, OctreePopulation.FLAT, OctreePopulation.GRID })
+  public String backend;
+
+  private OctreePopulation generator;
+  private LevelOctree<PositionComponent> octree;
+  private Octree<PositionComponent> dynamicOctree;
+  private Array<PositionComponent> components;
+  private FrustrumOctreeQuery frustrumQuery;
+  private BoundingBoxOctreeQuery neighbourQuery;
+  private BoundingBox neighbourBox;
+  private int found;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    generator     = new OctreePopulation(robots);
+    components    = generator.createRobots(robots);
+    octree        = OctreePopulation.levelOctree(backend);
+    dynamicOctree = octree.getDynamicOctree();
+    for (int i = 0; i < components.size; i++) {
+      dynamicOctree.insert(components.get(i));
+    }
+
+    frustrumQuery  = new FrustrumOctreeQuery();
+    frustrumQuery.setFrustum(generator.randomCamera().frustum);
+    neighbourQuery = new BoundingBoxOctreeQuery();
+    neighbourBox   = new BoundingBox();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    octree.dispose();
+    components.clear();
+  }
+
+  /**
+   * Clears dynamic octree and inserts all robots
+   * @return
+   */
+  @Benchmark
+  public int insertAll() {
+    octree.setBounds(OctreePopulation.WORLD_BOUNDS);
+    for (int i = 0; i < components.size; i++) {
+      dynamicOctree.insert(components.get(i));
+    }
+    return components.size;
+  }
+
+  /**
+   * One frame of movement: every robot moves and is relocated
+   * @return
+   */
+  @Benchmark
+  public int updateAll() {
+    for (int i = 0; i < components.size; i++) {
+      PositionComponent robot = components.get(i);
+      generator.stepRobot(robot, ROBOT_SPEED);
+      dynamicOctree.relocate(robot);
+    }
+    dynamicOctree.collapse();
+    return components.size;
+  }
+
+  /**
+   * One frame of movement followed by frustrum query
+   * @return
+   */
+  @Benchmark
+  public int updateAndFrustrumQuery() {
+    updateAll();
+    found = 0;
+    octree.query(frustrumQuery, this);
+    return found;
+  }
+
+  /**
+   * Finds neighbours around some robots, like broad phase of collision detection
+   * @return
+   */
+  @Benchmark
+  public int neighbourQuery() {
+    found = 0;
+    for (int i = 0; i < NEIGHBOUR_QUERIES; i++) {
+      PositionComponent robot = components.get(i);
+      neighbourBox.min.set(robot).sub(NEIGHBOUR_RANGE);
+      neighbourBox.max.set(robot).add(NEIGHBOUR_RANGE);
+      neighbourQuery.setBox(neighbourBox.set(neighbourBox.min, neighbourBox.max));
+      octree.query(neighbourQuery, this);
+    }
+    return found;
+  }
+
+  @Override
+  public boolean visit(PositionComponent object) {
+    found++;
+    return true;
+  }
+}
@@ -0,0 +1,92 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import de.macbury.expanse.core.graphics.occlusion.OcclusionBuffer;
+
+/**
+ * Checks that {@link OcclusionBuffer} never rejects box that is partially visible above ridge of occluder,
+ * and still rejects box that is completely hidden behind it. Run with: gradlew benchmark:checkOcclusion
+ */
+public class OcclusionCorrectnessCheck {
+  private final static int BUFFER_WIDTH  = 64;
+  private final static int BUFFER_HEIGHT = 32;
+  /**
+   * Ridge height is moved in small steps, so it lands in different places inside texels
+   */
+  private final static int RIDGE_STEPS   = 50;
+  private final static float WALL_Z      = -20f;
+  private final static float BOX_NEAR_Z  = -40f;
+
+  private final OcclusionBuffer buffer = new OcclusionBuffer(BUFFER_WIDTH, BUFFER_HEIGHT);
+  private final BoundingBox box        = new BoundingBox();
+  private final PerspectiveCamera camera;
+  private int failures;
+
+  static {
+    GdxNativesLoader.load();
+  }
+
+  public OcclusionCorrectnessCheck() {
+    camera = new PerspectiveCamera(60, BUFFER_WIDTH, BUFFER_HEIGHT);
+    camera.position.set(0, 5, 0);
+    camera.lookAt(0, 5, -1);
+    camera.near = 0.1f;
+    camera.far  = 500f;
+    camera.update();
+  }
+
+  public static void main(String[] args) {
+    OcclusionCorrectnessCheck check = new OcclusionCorrectnessCheck();
+    for (int step = 0; step < RIDGE_STEPS; step++) {
+      check.run(5f + step * 0.037f);
+    }
+
+    if (check.failures > 0) {
+      System.err.println("Occlusion check failed: " + check.failures);
+      System.exit(1);
+    } else {
+      System.out.println("Occlusion check passed");
+    }
+  }
+
+  /**
+   * Wall at z = -20 with horizontal ridge at given height, thin boxes are placed behind it at z = -40.
+   * Heights of boxes are scaled by distance, so they are measured against ridge line on screen
+   * @param ridge
+   */
+  private void run(float ridge) {
+    buffer.begin(camera.combined);
+    wall(WALL_Z, 0, 20, ridge);
+    buffer.end();
+
+    float eye         = camera.position.y;
+    float ridgeOnBox  = eye + (ridge - eye) * (-BOX_NEAR_Z / -WALL_Z);
+    float texelOnBox  = 2f * (float)Math.tan(Math.toRadians(camera.fieldOfView * 0.5f)) * -BOX_NEAR_Z / BUFFER_HEIGHT;
+
+    box.set(new Vector3(-1, ridgeOnBox - 6f * texelOnBox, BOX_NEAR_Z - 1f), new Vector3(1, ridgeOnBox - 3f * texelOnBox, BOX_NEAR_Z));
+    if (!buffer.isOccluded(box)) {
+      fail(ridge, "box hidden behind ridge was not occluded");
+    }
+
+    /**
+     * Top of box sticks out less than one texel above ridge
+     */
+    box.set(new Vector3(-1, 0, BOX_NEAR_Z - 1f), new Vector3(1, ridgeOnBox + 0.3f * texelOnBox, BOX_NEAR_Z));
+    if (buffer.isOccluded(box)) {
+      fail(ridge, "box sticking out above ridge was occluded");
+    }
+  }
+
+  private void wall(float z, float bottom, float halfWidth, float top) {
+    buffer.triangle(-halfWidth, bottom, z, halfWidth, bottom, z, halfWidth, top, z);
+    buffer.triangle(-halfWidth, bottom, z, halfWidth, top, z, -halfWidth, top, z);
+  }
+
+  private void fail(float ridge, String message) {
+    failures++;
+    System.err.println("[ridge " + ridge + "] " + message);
+  }
+}
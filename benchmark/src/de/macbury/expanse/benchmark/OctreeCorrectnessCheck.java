@@ -0,0 +1,131 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.math.collision.Ray;
+import com.badlogic.gdx.utils.Array;
+import de.macbury.expanse.core.entities.components.PositionComponent;
+import de.macbury.expanse.core.octree.LevelOctree;
+import de.macbury.expanse.core.octree.Octree;
+import de.macbury.expanse.core.octree.query.FrustrumOctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.PointOctreeQuery;
+import de.macbury.expanse.core.octree.query.RayOctreeQuery;
+
+/**
+ * Compares results of {@link LevelOctree} queries with brute force search over all objects, after inserts, moves and removals.
+ * Run with: gradlew benchmark:checkOctree
+ */
+public class OctreeCorrectnessCheck {
+  private final static int POPULATION = 10000;
+  private final static int ROUNDS     = 20;
+  private final static String[] BACKENDS = { OctreePopulation.TREE, OctreePopulation.LOOSE, OctreePopulation.FLAT, OctreePopulation.GRID };
+
+  private final Array<PositionComponent> found    = new Array<PositionComponent>();
+  private final Array<PositionComponent> expected = new Array<PositionComponent>();
+  private final BoundingBox tempBox               = new BoundingBox();
+  private int failures;
+
+  public static void main(String[] args) {
+    OctreeCorrectnessCheck check = new OctreeCorrectnessCheck();
+    for (String backend : BACKENDS) {
+      check.run(backend);
+    }
+
+    if (check.failures > 0) {
+      System.err.println("Octree check failed: " + check.failures);
+      System.exit(1);
+    } else {
+      System.out.println("Octree check passed");
+    }
+  }
+
+  private void run(String backend) {
+    OctreePopulation generator               = new OctreePopulation(POPULATION);
+    Array<PositionComponent> components      = generator.create(POPULATION);
+    LevelOctree<PositionComponent> octree    = OctreePopulation.levelOctree(backend);
+    Octree<PositionComponent> dynamicOctree  = octree.getDynamicOctree();
+    for (int i = 0; i < components.size; i++) {
+      dynamicOctree.insert(components.get(i));
+    }
+
+    FrustrumOctreeQuery frustrumQuery = new FrustrumOctreeQuery();
+    PointOctreeQuery pointQuery       = new PointOctreeQuery();
+    RayOctreeQuery rayQuery           = new RayOctreeQuery();
+    Vector3 point                     = new Vector3();
+
+    for (int round = 0; round < ROUNDS; round++) {
+      PerspectiveCamera camera = generator.randomCamera();
+      frustrumQuery.setFrustum(camera.frustum);
+      expected.clear();
+      for (int i = 0; i < components.size; i++) {
+        if (camera.frustum.boundsInFrustum(components.get(i).boundingBox)) {
+          expected.add(components.get(i));
+        }
+      }
+      compare(backend, "frustrum", octree, frustrumQuery);
+
+      pointQuery.setPoint(components.get(generator.getRandom().nextInt(components.size)));
+      expected.clear();
+      for (int i = 0; i < components.size; i++) {
+        if (components.get(i).boundingBox.contains(pointQuery.getPoint())) {
+          expected.add(components.get(i));
+        }
+      }
+      compare(backend, "point", octree, pointQuery);
+
+      rayQuery.setRay(new Ray(camera.position, generator.randomPoint(point).sub(camera.position).nor()));
+      expected.clear();
+      for (int i = 0; i < components.size; i++) {
+        if (Intersector.intersectRayBoundsFast(rayQuery.getRay(), components.get(i).boundingBox)) {
+          expected.add(components.get(i));
+        }
+      }
+      compare(backend, "ray", octree, rayQuery);
+
+      for (int i = 0; i < components.size / 10; i++) {
+        PositionComponent component = components.get(generator.getRandom().nextInt(components.size));
+        generator.moveRandomly(component);
+        dynamicOctree.relocate(component);
+      }
+
+      for (int i = 0; i < components.size / 100; i++) {
+        PositionComponent component = components.removeIndex(generator.getRandom().nextInt(components.size));
+        if (!dynamicOctree.remove(component)) {
+          fail(backend, "remove", "object was not found in octree");
+        }
+      }
+      dynamicOctree.collapse();
+    }
+
+    found.clear();
+    dynamicOctree.retrieve(found);
+    if (found.size != components.size) {
+      fail(backend, "retrieve", "expected " + components.size + " objects but got " + found.size);
+    }
+    octree.dispose();
+  }
+
+  private void compare(String backend, String queryName, LevelOctree<PositionComponent> octree, OctreeQuery<PositionComponent> query) {
+    found.clear();
+    octree.retrieve(found, query);
+    if (found.size != expected.size) {
+      fail(backend, queryName, "expected " + expected.size + " objects but got " + found.size);
+      return;
+    }
+
+    for (int i = 0; i < expected.size; i++) {
+      if (!found.contains(expected.get(i), true)) {
+        fail(backend, queryName, "missing object at " + expected.get(i).boundingBox);
+        return;
+      }
+    }
+  }
+
+  private void fail(String backend, String check, String message) {
+    failures++;
+    System.err.println("[" + backend + "] " + check + ": " + message);
+  }
+}
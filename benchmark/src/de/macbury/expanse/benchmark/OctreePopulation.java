@@ -0,0 +1,174 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import de.macbury.expanse.core.entities.components.PositionComponent;
+import de.macbury.expanse.core.octree.LevelOctree;
+import de.macbury.expanse.core.octree.OctreeNode;
+import de.macbury.expanse.core.octree.SpatialGrid;
+
+/**
+ * Synthetic population of {@link PositionComponent} spread over terrain sized world
+ */
+public class OctreePopulation {
+  public final static String TREE  = "tree";
+  public final static String LOOSE = "loose";
+  public final static String FLAT  = "flat";
+  public final static String GRID  = "grid";
+
+  public final static BoundingBox WORLD_BOUNDS = new BoundingBox(new Vector3(0, -16, 0), new Vector3(1024, 112, 1024));
+  private final static float MIN_SIZE = 0.5f;
+  private final static float MAX_SIZE = 4.0f;
+  private final static float ROBOT_TERRAIN_HEIGHT = 8.0f;
+
+  private final RandomXS128 random;
+
+  static {
+    GdxNativesLoader.load();
+  }
+
+  public OctreePopulation(long seed) {
+    this.random = new RandomXS128(seed);
+  }
+
+  /**
+   * Creates level octree with backend name used in benchmark params
+   * @param backend {@link #TREE}, {@link #LOOSE}, {@link #FLAT} or {@link #GRID}
+   * @return
+   */
+  public static LevelOctree<PositionComponent> levelOctree(String backend) {
+    LevelOctree<PositionComponent> octree;
+    if (TREE.equals(backend)) {
+      octree = new LevelOctree<PositionComponent>();
+    } else if (LOOSE.equals(backend)) {
+      octree = new LevelOctree<PositionComponent>(OctreeNode.DEFAULT_LOOSENESS);
+    } else if (FLAT.equals(backend)) {
+      octree = LevelOctree.flat();
+    } else if (GRID.equals(backend)) {
+      octree = LevelOctree.grid(SpatialGrid.DEFAULT_CELL_SIZE);
+    } else {
+      throw new IllegalArgumentException("Unknown octree backend: " + backend);
+    }
+    octree.setBounds(WORLD_BOUNDS);
+    return octree;
+  }
+
+  /**
+   * Creates components with random position and size inside {@link #WORLD_BOUNDS}
+   * @param count
+   * @return
+   */
+  public Array<PositionComponent> create(int count) {
+    Array<PositionComponent> components = new Array<PositionComponent>(count);
+    for (int i = 0; i < count; i++) {
+      PositionComponent component = new PositionComponent();
+      component.dimension.set(size(), size(), size());
+      moveRandomly(component);
+      components.add(component);
+    }
+    return components;
+  }
+
+  /**
+   * Creates robot sized components standing on flat band of terrain, like robots on heightfield
+   * @param count
+   * @return
+   */
+  public Array<PositionComponent> createRobots(int count) {
+    Array<PositionComponent> robots = new Array<PositionComponent>(count);
+    for (int i = 0; i < count; i++) {
+      PositionComponent robot = new PositionComponent();
+      robot.dimension.set(1, 1, 1);
+      robot.set(
+        randomRange(WORLD_BOUNDS.min.x + MAX_SIZE, WORLD_BOUNDS.max.x - MAX_SIZE),
+        randomRange(0, ROBOT_TERRAIN_HEIGHT),
+        randomRange(WORLD_BOUNDS.min.z + MAX_SIZE, WORLD_BOUNDS.max.z - MAX_SIZE)
+      );
+      robot.rotationDeg = random.nextFloat() * 360f;
+      updateBoundingBox(robot);
+      robots.add(robot);
+    }
+    return robots;
+  }
+
+  /**
+   * Moves robot forward in direction of its rotation. Robot turns back on world edge
+   * @param robot
+   * @param distance
+   */
+  public void stepRobot(PositionComponent robot, float distance) {
+    robot.x += MathUtils.cosDeg(robot.rotationDeg) * distance;
+    robot.z += MathUtils.sinDeg(robot.rotationDeg) * distance;
+    if (robot.x < WORLD_BOUNDS.min.x + MAX_SIZE || robot.x > WORLD_BOUNDS.max.x - MAX_SIZE || robot.z < WORLD_BOUNDS.min.z + MAX_SIZE || robot.z > WORLD_BOUNDS.max.z - MAX_SIZE) {
+      robot.x = MathUtils.clamp(robot.x, WORLD_BOUNDS.min.x + MAX_SIZE, WORLD_BOUNDS.max.x - MAX_SIZE);
+      robot.z = MathUtils.clamp(robot.z, WORLD_BOUNDS.min.z + MAX_SIZE, WORLD_BOUNDS.max.z - MAX_SIZE);
+      robot.rotationDeg += 180f;
+    }
+    updateBoundingBox(robot);
+  }
+
+  /**
+   * Moves component to random position and updates its bounding box
+   * @param component
+   */
+  public void moveRandomly(PositionComponent component) {
+    component.set(
+      randomRange(WORLD_BOUNDS.min.x + MAX_SIZE, WORLD_BOUNDS.max.x - MAX_SIZE),
+      randomRange(WORLD_BOUNDS.min.y + MAX_SIZE, WORLD_BOUNDS.max.y - MAX_SIZE),
+      randomRange(WORLD_BOUNDS.min.z + MAX_SIZE, WORLD_BOUNDS.max.z - MAX_SIZE)
+    );
+    updateBoundingBox(component);
+  }
+
+  /**
+   * Random point inside {@link #WORLD_BOUNDS}
+   * @param out
+   * @return
+   */
+  public Vector3 randomPoint(Vector3 out) {
+    return out.set(
+      randomRange(WORLD_BOUNDS.min.x, WORLD_BOUNDS.max.x),
+      randomRange(WORLD_BOUNDS.min.y, WORLD_BOUNDS.max.y),
+      randomRange(WORLD_BOUNDS.min.z, WORLD_BOUNDS.max.z)
+    );
+  }
+
+  /**
+   * Camera standing above terrain and looking at random direction
+   * @return
+   */
+  public PerspectiveCamera randomCamera() {
+    PerspectiveCamera camera = new PerspectiveCamera(67, 1280, 720);
+    camera.near = 0.1f;
+    camera.far  = 300f;
+    randomPoint(camera.position);
+    float angle = random.nextFloat() * MathUtils.PI2;
+    camera.direction.set(MathUtils.cos(angle), -0.3f, MathUtils.sin(angle)).nor();
+    camera.up.set(Vector3.Y);
+    camera.update();
+    return camera;
+  }
+
+  public static void updateBoundingBox(PositionComponent component) {
+    component.boundingBox.min.set(component).mulAdd(component.dimension, -0.5f);
+    component.boundingBox.max.set(component).mulAdd(component.dimension, 0.5f);
+    component.boundingBox.set(component.boundingBox.min, component.boundingBox.max);
+  }
+
+  private float size() {
+    return randomRange(MIN_SIZE, MAX_SIZE);
+  }
+
+  private float randomRange(float start, float end) {
+    return start + random.nextFloat() * (end - start);
+  }
+
+  public RandomXS128 getRandom() {
+    return random;
+  }
+}
@@ -0,0 +1,170 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import de.macbury.expanse.core.scripts.BaseKeyword;
+import de.macbury.expanse.core.scripts.RobotScriptContextFactory;
+import de.macbury.expanse.core.scripts.ScriptRunner;
+import de.macbury.expanse.core.scripts.ScriptRunnerListener;
+import de.macbury.expanse.core.scripts.ScriptScheduler;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContinuationPending;
+import org.mozilla.javascript.NativeFunction;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Runs scripts with loops inside callbacks of native functions like forEach under small instruction budget of
+ * {@link ScriptScheduler}. Safe points in callbacks cannot capture continuation, so script must yield later and still
+ * finish with right result. Run with: gradlew benchmark:checkScriptBudget
+ */
+public class ScriptBudgetCheck implements ScriptRunnerListener {
+  private final static int INSTRUCTION_BUDGET = 200;
+  private final static int TICK_LIMIT         = 10000;
+  private final static int OUTER_LOOPS        = 100;
+  private final static int[] VALUES           = { 1, 2, 3, 4 };
+
+  private Object result;
+  private Exception exception;
+  private boolean finished;
+  private int failures;
+
+  /**
+   * Passes value from script to check
+   */
+  public static class ResultKeyword extends BaseKeyword {
+    private final ScriptBudgetCheck check;
+
+    public ResultKeyword(ScriptBudgetCheck check) {
+      super(null, null, "check", "check");
+      this.check = check;
+    }
+
+    public void done(Object value) {
+      check.result = value;
+    }
+
+    @Override
+    public NativeFunction register(Context context, ScriptableObject coreScope) {
+      coreScope.put("check", coreScope, this);
+      return (NativeFunction)context.compileFunction(coreScope, "function done(value) { check.done(value); }", "check", 0, null);
+    }
+  }
+
+  public static void main(String[] args) {
+    Gdx.app = (Application)Proxy.newProxyInstance(ScriptBudgetCheck.class.getClassLoader(), new Class[] { Application.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] arguments) {
+        return null;
+      }
+    });
+    RobotScriptContextFactory.init();
+
+    ScriptBudgetCheck check = new ScriptBudgetCheck();
+    check.run(
+      "forEach",
+      "var total = 0;" +
+      "for (var n = 0; n < " + OUTER_LOOPS + "; n++) {" +
+      "  [1, 2, 3, 4].forEach(function(v) { for (var i = 0; i < v * 10; i++) { total += i % 3; } });" +
+      "}" +
+      "done(total);",
+      expectedTotal()
+    );
+    check.run(
+      "map",
+      "var total = 0;" +
+      "for (var n = 0; n < " + OUTER_LOOPS + "; n++) {" +
+      "  [1, 2, 3, 4].map(function(v) { var s = 0, i = 0; while (i < v * 10) { s += i % 3; i++; } return s; })" +
+      "              .forEach(function(s) { total += s; });" +
+      "}" +
+      "done(total);",
+      expectedTotal()
+    );
+
+    if (check.failures > 0) {
+      System.err.println("Script budget check failed: " + check.failures);
+      System.exit(1);
+    } else {
+      System.out.println("Script budget check passed");
+    }
+  }
+
+  private static int expectedTotal() {
+    int total = 0;
+    for (int n = 0; n < OUTER_LOOPS; n++) {
+      for (int v : VALUES) {
+        for (int i = 0; i < v * 10; i++) {
+          total += i % 3;
+        }
+      }
+    }
+    return total;
+  }
+
+  private void run(String name, String source, int expected) {
+    result    = null;
+    exception = null;
+    finished  = false;
+
+    ScriptScheduler scheduler = ScriptScheduler.deterministic();
+    scheduler.setInstructionBudget(INSTRUCTION_BUDGET);
+    Array<BaseKeyword> keywords = new Array<BaseKeyword>();
+    keywords.add(new ResultKeyword(this));
+    ScriptRunner runner = new ScriptRunner(source, keywords, false, scheduler);
+    runner.addListener(this);
+    runner.start();
+
+    int ticks = 0;
+    while (!finished && ticks < TICK_LIMIT) {
+      scheduler.update();
+      ticks++;
+    }
+
+    if (exception != null) {
+      fail(name, "script threw " + exception);
+    } else if (!finished) {
+      fail(name, "script did not finish in " + TICK_LIMIT + " ticks");
+    } else if (!(result instanceof Number) || ((Number)result).intValue() != expected) {
+      fail(name, "expected " + expected + " but was " + result);
+    } else if (ticks < 2) {
+      fail(name, "script did not yield, finished in one tick");
+    }
+
+    runner.dispose();
+    scheduler.dispose();
+  }
+
+  private void fail(String name, String message) {
+    failures++;
+    System.err.println("[" + name + "] " + message);
+  }
+
+  @Override
+  public void onScriptStart(ScriptRunner scriptRunner) {
+
+  }
+
+  @Override
+  public void onScriptException(ScriptRunner scriptRunner, Exception exception) {
+    this.exception = exception;
+  }
+
+  @Override
+  public void onScriptAbort(ScriptRunner scriptRunner) {
+
+  }
+
+  @Override
+  public void onScriptPause(ScriptRunner scriptRunner, ContinuationPending continuationPending) {
+
+  }
+
+  @Override
+  public void onScriptFinish(ScriptRunner scriptRunner) {
+    finished = true;
+  }
+}
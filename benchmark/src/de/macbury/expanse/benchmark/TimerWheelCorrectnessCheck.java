@@ -0,0 +1,186 @@
+package de.macbury.expanse.benchmark;
+
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import de.macbury.expanse.core.TelegramEvents;
+import de.macbury.expanse.core.entities.Messages;
+import de.macbury.expanse.core.entities.TelegramQueue;
+import de.macbury.expanse.core.entities.TelegramTimerWheel;
+
+import java.util.Arrays;
+
+/**
+ * Checks that {@link TelegramTimerWheel} delivers telegrams delayed by frames exactly in their frame, also when they wait more rounds,
+ * and telegrams delayed by seconds never before their deadline and at most one frame late while frame length changes less than twice.
+ * Run with: gradlew benchmark:checkTimerWheel
+ */
+public class TimerWheelCorrectnessCheck implements TelegramQueue.Consumer, Telegraph {
+  private final static int WHEEL_SIZE = 64;
+  private final static int[] FRAME_DELAYS = { 1, 2, 3, 63, 64, 65, 127, 128, 129, 300, 1000 };
+  private final static float[] SECOND_DELAYS = { 0.001f, 0.016f, 0.1f, 0.5f, 1f, 2.5f, 7f, 20f };
+  /**
+   * Frame lengths used in turns, no frame is twice longer than any other, so telegrams can be late at most one frame
+   */
+  private final static float[] STEADY_LENGTHS = { 1f/60f, 1f/45f, 1f/31f, 1f/50f, 1f/60f, 1f/40f, 1f/58f };
+  /**
+   * Frame rate drops and rises a lot, telegrams can be late more but never early
+   */
+  private final static float[] UNSTEADY_LENGTHS = { 1f/60f, 1f/144f, 0.25f, 1f/20f, 1f/144f, 1f/30f, 1f/60f };
+  private final static int FRAMES_PER_LENGTH = 37;
+
+  private TelegramTimerWheel wheel;
+  private long[] deliveredFrame;
+  private int[] deliveredCount;
+  private float previousTime;
+  private float time;
+  private float[] deliveredPreviousTime;
+  private float[] deliveredTime;
+  private int received;
+  private int failures;
+
+  public static void main(String[] args) {
+    TimerWheelCorrectnessCheck check = new TimerWheelCorrectnessCheck();
+    check.checkFrames();
+    check.checkSeconds("steady", STEADY_LENGTHS, true);
+    check.checkSeconds("unsteady", UNSTEADY_LENGTHS, false);
+    check.checkMessages();
+
+    if (check.failures > 0) {
+      System.err.println("Timer wheel check failed: " + check.failures);
+      System.exit(1);
+    } else {
+      System.out.println("Timer wheel check passed");
+    }
+  }
+
+  /**
+   * Schedule telegrams from different frames, so they start in different slots
+   */
+  private void checkFrames() {
+    wheel          = new TelegramTimerWheel(WHEEL_SIZE);
+    deliveredTime  = null;
+    int count      = FRAME_DELAYS.length * 3;
+    long[] expected = new long[count];
+    deliveredFrame = new long[count];
+    deliveredCount = new int[count];
+    Arrays.fill(deliveredFrame, -1);
+
+    for (int start = 0; start < 3; start++) {
+      for (int i = 0; i < FRAME_DELAYS.length; i++) {
+        int id       = start * FRAME_DELAYS.length + i;
+        expected[id] = wheel.getFrame() + FRAME_DELAYS[i];
+        wheel.schedule(null, null, id, null, FRAME_DELAYS[i]);
+      }
+      wheel.advance(1f/60f, this);
+    }
+
+    while (!wheel.isEmpty() && wheel.getFrame() < 2000) {
+      wheel.advance(1f/60f, this);
+    }
+
+    for (int id = 0; id < count; id++) {
+      if (deliveredCount[id] != 1) {
+        fail("frames", id, "delivered " + deliveredCount[id] + " times");
+      } else if (deliveredFrame[id] != expected[id]) {
+        fail("frames", id, "delivered in frame " + deliveredFrame[id] + " instead of " + expected[id]);
+      }
+    }
+  }
+
+  /**
+   * Schedules telegrams in each phase of frame lengths, they must not be delivered before deadline
+   * @param lateOneFrame if telegram must be delivered in first frame whose end time reaches deadline
+   */
+  private void checkSeconds(String name, float[] frameLengths, boolean lateOneFrame) {
+    wheel                 = new TelegramTimerWheel(WHEEL_SIZE);
+    int count             = SECOND_DELAYS.length * frameLengths.length;
+    float[] deadlines     = new float[count];
+    deliveredCount        = new int[count];
+    deliveredFrame        = new long[count];
+    deliveredTime         = new float[count];
+    deliveredPreviousTime = new float[count];
+    time                  = 0;
+
+    for (int phase = 0; phase < frameLengths.length; phase++) {
+      for (int i = 0; i < SECOND_DELAYS.length; i++) {
+        int id        = phase * SECOND_DELAYS.length + i;
+        deadlines[id] = time + SECOND_DELAYS[i];
+        wheel.scheduleIn(null, null, id, null, SECOND_DELAYS[i]);
+      }
+      for (int frame = 0; frame < FRAMES_PER_LENGTH; frame++) {
+        advance(frameLengths[phase]);
+      }
+    }
+
+    for (int frame = 0; !wheel.isEmpty() && frame < 10000; frame++) {
+      advance(frameLengths[frame / FRAMES_PER_LENGTH % frameLengths.length]);
+    }
+
+    for (int id = 0; id < count; id++) {
+      if (deliveredCount[id] != 1) {
+        fail(name, id, "delivered " + deliveredCount[id] + " times");
+      } else if (deliveredTime[id] < deadlines[id]) {
+        fail(name, id, "delivered at " + deliveredTime[id] + " before deadline " + deadlines[id]);
+      } else if (lateOneFrame && deliveredPreviousTime[id] >= deadlines[id]) {
+        fail(name, id, "delivered at " + deliveredTime[id] + " but deadline " + deadlines[id] + " was reached at " + deliveredPreviousTime[id]);
+      }
+    }
+  }
+
+  /**
+   * Time is summed same way as in wheel, so deadlines are compared without rounding difference
+   */
+  private void advance(float delta) {
+    previousTime = time;
+    time        += delta;
+    wheel.advance(delta, this);
+  }
+
+  /**
+   * {@link Messages#dispatchInSeconds} delivers telegram to receiver once, after its time
+   */
+  private void checkMessages() {
+    Messages messages = new Messages();
+    received          = 0;
+    messages.dispatchInSeconds(this, this, TelegramEvents.WaitFinished, 1, 0.5f);
+
+    float elapsed = 0;
+    while (elapsed < 0.5f - 1f/60f) {
+      messages.update(1f/60f);
+      elapsed += 1f/60f;
+      if (received > 0 && elapsed < 0.5f) {
+        fail("messages", TelegramEvents.WaitFinished.ordinal(), "delivered after " + elapsed + "s");
+        return;
+      }
+    }
+    for (int i = 0; i < 5; i++) {
+      messages.update(1f/60f);
+    }
+    if (received != 1) {
+      fail("messages", TelegramEvents.WaitFinished.ordinal(), "delivered " + received + " times");
+    }
+  }
+
+  @Override
+  public void onTelegram(Telegram telegram) {
+    int id = telegram.message;
+    deliveredCount[id]++;
+    deliveredFrame[id] = wheel.getFrame();
+    if (deliveredTime != null) {
+      deliveredTime[id]         = time;
+      deliveredPreviousTime[id] = previousTime;
+    }
+  }
+
+  @Override
+  public boolean handleMessage(Telegram msg) {
+    if (TelegramEvents.WaitFinished.is(msg))
+      received++;
+    return true;
+  }
+
+  private void fail(String name, int id, String message) {
+    failures++;
+    System.err.println("[" + name + " " + id + "] " + message);
+  }
+}
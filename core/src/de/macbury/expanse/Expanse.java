@@ -3,7 +3,6 @@ package de.macbury.expanse;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.ai.GdxAI;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.profiling.GLProfiler;
 import de.macbury.expanse.core.assets.Assets;
@@ -76,8 +75,8 @@ public class Expanse extends ApplicationAdapter {
 
   @Override
   public void render () {
-    GdxAI.getTimepiece().update(Gdx.graphics.getDeltaTime());
-    messages.update();
+    if (!messages.isTickLocked())
+      messages.update(Gdx.graphics.getDeltaTime());
     screens.update();
 
     Gdx.gl.glClearColor(1,1,1,1);
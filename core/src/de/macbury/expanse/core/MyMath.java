@@ -1,7 +1,9 @@
 package de.macbury.expanse.core;
 
+import com.badlogic.gdx.math.Frustum;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 
 /**
  * Created by macbury on 03.11.14.
@@ -62,4 +64,17 @@ public class MyMath {
     normal.y = MathUtils.roundPositive(normal.y);
     normal.z = MathUtils.roundPositive(normal.z);
   }
+
+  /**
+   * Same as {@link Frustum#boundsInFrustum(BoundingBox)} but without shared temporary vector, so it can be called from many threads
+   * @param frustum
+   * @param bounds
+   * @return
+   */
+  public static boolean boundsInFrustum(Frustum frustum, BoundingBox bounds) {
+    return frustum.boundsInFrustum(
+      bounds.getCenterX(), bounds.getCenterY(), bounds.getCenterZ(),
+      bounds.getWidth() * 0.5f, bounds.getHeight() * 0.5f, bounds.getDepth() * 0.5f
+    );
+  }
 }
@@ -21,6 +21,12 @@ public enum TelegramEvents {
    */
   CollidedWithTerrain,
 
+  /**
+   * This event is triggered when moving entity have collided with other entity. Sender is {@link de.macbury.expanse.core.entities.components.PositionComponent}
+   * of other entity and receiver is {@link de.macbury.expanse.core.entities.components.MotorComponent} of moving entity
+   */
+  CollidedWithEntity,
+
   /**
    * Here are events triggered by {@link de.macbury.expanse.core.entities.states.RobotMotorState}.
    * They can be used for starting and stoping sound/animation etc
@@ -39,6 +45,11 @@ public enum TelegramEvents {
    * Stops robot script, Triggered by player clicking on ui
    */
   StopRobot,
+  /**
+   * Wait of robot expired, sent to its cpu with {@link de.macbury.expanse.core.entities.Messages#dispatchInSeconds}.
+   * Payload is int with wait id from {@link de.macbury.expanse.core.entities.components.TimerComponent#setWaitFor(float)}
+   */
+  WaitFinished,
   /**
    * Make robot turn, payload is int with degrees
    */
@@ -68,6 +79,17 @@ public enum TelegramEvents {
   }
 
   public static TelegramEvents from(Telegram msg) {
-    return TelegramEvents.values()[msg.message];
+    return from(msg.message);
+  }
+
+  private final static TelegramEvents[] VALUES = values();
+
+  /**
+   * Returns event for ordinal without allocating new array like {@link TelegramEvents#values()}
+   * @param ordinal
+   * @return
+   */
+  public static TelegramEvents from(int ordinal) {
+    return VALUES[ordinal];
   }
 }
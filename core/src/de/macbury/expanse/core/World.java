@@ -17,6 +17,7 @@ import de.macbury.expanse.core.graphics.camera.RTSCameraController;
 import de.macbury.expanse.core.graphics.terrain.Terrain;
 import de.macbury.expanse.core.graphics.terrain.TerrainData;
 import de.macbury.expanse.core.octree.LevelOctree;
+import de.macbury.expanse.core.octree.OctreeNode;
 
 /**
  * This class describes all game world
@@ -41,7 +42,7 @@ public class World implements Disposable {
     this.camera               = new GameCamera();
     this.terrain              = terrain;
     this.rtsCameraController  = new RTSCameraController(game.input);
-    this.octree               = new LevelOctree<PositionComponent>();
+    this.octree               = new LevelOctree<PositionComponent>(OctreeNode.DEFAULT_LOOSENESS);
     octree.setBounds(terrain.getBoundingBox(new BoundingBox()));
 
     this.entities             = new EntityManager(this, game);
@@ -7,7 +7,6 @@ import com.badlogic.gdx.assets.AssetLoaderParameters;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
 import com.badlogic.gdx.assets.loaders.FileHandleResolver;
-import com.badlogic.gdx.assets.loaders.SynchronousAssetLoader;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.*;
 import de.macbury.expanse.core.assets.Assets;
@@ -16,9 +15,9 @@ import de.macbury.expanse.core.entities.blueprint.EntityBlueprint;
 import de.macbury.expanse.core.graphics.terrain.Terrain;
 
 /**
- * Loads blueprint and all its dependencies
+ * Loads blueprint and all its dependencies. Work from {@link ComponentBlueprint#loadAsync(Assets)}, like compiling robot scripts, is done on loader thread
  */
-public class EntityBlueprintLoader extends SynchronousAssetLoader<EntityBlueprint, EntityBlueprintLoader.BlueprintParameter> {
+public class EntityBlueprintLoader extends AsynchronousAssetLoader<EntityBlueprint, EntityBlueprintLoader.BlueprintParameter> {
   private final JsonReader jsonReader;
   private final Json json;
   private Array<ComponentBlueprint> componentBlueprints;
@@ -31,7 +30,14 @@ public class EntityBlueprintLoader extends SynchronousAssetLoader<EntityBlueprin
   }
 
   @Override
-  public EntityBlueprint load(AssetManager assetManager, String fileName, FileHandle file, BlueprintParameter parameter) {
+  public void loadAsync(AssetManager assetManager, String fileName, FileHandle file, BlueprintParameter parameter) {
+    for (ComponentBlueprint blueprint : componentBlueprints) {
+      blueprint.loadAsync((Assets)assetManager);
+    }
+  }
+
+  @Override
+  public EntityBlueprint loadSync(AssetManager assetManager, String fileName, FileHandle file, BlueprintParameter parameter) {
     for (ComponentBlueprint blueprint : componentBlueprints) {
       blueprint.assignDependencies((Assets)assetManager);
     }
@@ -1,15 +1,34 @@
 package de.macbury.expanse.core.entities;
 
+import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import de.macbury.expanse.Expanse;
 import de.macbury.expanse.core.World;
 import de.macbury.expanse.core.entities.systems.*;
+import de.macbury.expanse.core.scripts.ScriptScheduler;
 
 /**
- * This class manages all entities in game
+ * This class manages all entities in game.
+ * With fixed timestep simulation systems and {@link Messages} are updated in ticks of same length no matter of frame time,
+ * and rendering systems once per frame. Together with {@link ScriptScheduler.Mode#Deterministic} every run of same world plays out the same
  */
 public class EntityManager extends PooledEngine implements Disposable {
+  /**
+   * Tick length used when scripts run in {@link ScriptScheduler.Mode#Deterministic}
+   */
+  public static final float DEFAULT_FIXED_TIMESTEP = 1f / 30f;
+  /**
+   * If frame takes longer, simulation slows down instead of running more ticks
+   */
+  private static final int MAX_TICKS_PER_FRAME = 5;
+  private final Array<EntitySystem> simulationSystems = new Array<EntitySystem>();
+  private final Array<EntitySystem> renderingSystems  = new Array<EntitySystem>();
+  private Messages messages;
+  private float fixedTimestep;
+  private float accumulator;
+  private long tick;
   private SelectableSystem selectableSystem;
   private CollisionSystem collisionSystem;
   private RenderableSystem renderableSystem;
@@ -26,15 +45,16 @@ public class EntityManager extends PooledEngine implements Disposable {
     this.spriteRenderingSystem = new SpriteRenderingSystem(world.camera);
     this.robotManagerSystem    = new RobotManagerSystem(game.messages);
     this.motorSystem           = new MotorSystem(game.messages);
-    this.collisionSystem       = new CollisionSystem(world.octree, world.terrain);
+    this.collisionSystem       = new CollisionSystem(world.octree, world.terrain, game.messages);
     this.worldOctreeSystem     = new WorldOctreeSystem(world.octree);
-    this.renderableSystem      = new RenderableSystem(world.octree, world.camera, world.modelBatch, game.fb, world.env);
+    this.renderableSystem      = new RenderableSystem(world.octree, world.camera, world.modelBatch, game.fb, world.env, world.terrain);
 
     addEntityListener(selectableSystem);
     addEntityListener(robotManagerSystem);
     addEntityListener(collisionSystem);
     addEntityListener(worldOctreeSystem);
     addEntityListener(renderableSystem);
+    addEntityListener(motorSystem);
     addSystem(robotManagerSystem);
     addSystem(selectableSystem);
     addSystem(timerSystem);
@@ -46,6 +66,73 @@ public class EntityManager extends PooledEngine implements Disposable {
 
     addSystem(renderableSystem);
     addSystem(spriteRenderingSystem);
+
+    simulationSystems.addAll(robotManagerSystem, timerSystem, motorSystem, collisionSystem, worldOctreeSystem);
+    renderingSystems.addAll(selectableSystem, renderableSystem, spriteRenderingSystem);
+
+    this.messages = game.messages;
+    if (ScriptScheduler.getDefaultMode() == ScriptScheduler.Mode.Deterministic)
+      setFixedTimestep(DEFAULT_FIXED_TIMESTEP);
+  }
+
+  /**
+   * Runs simulation in fixed ticks if fixed timestep is set, otherwise updates all systems with frame time
+   * @param deltaTime
+   */
+  @Override
+  public void update(float deltaTime) {
+    if (fixedTimestep <= 0) {
+      tick++;
+      super.update(deltaTime);
+      return;
+    }
+
+    accumulator += deltaTime;
+    setProcessing(renderingSystems, false);
+    int ticks = 0;
+    while (accumulator >= fixedTimestep && ticks < MAX_TICKS_PER_FRAME) {
+      messages.update(fixedTimestep);
+      super.update(fixedTimestep);
+      accumulator -= fixedTimestep;
+      ticks++;
+      tick++;
+    }
+
+    if (accumulator >= fixedTimestep)
+      accumulator = 0;
+
+    setProcessing(simulationSystems, false);
+    setProcessing(renderingSystems, true);
+    super.update(deltaTime);
+    setProcessing(simulationSystems, true);
+  }
+
+  private void setProcessing(Array<EntitySystem> systems, boolean processing) {
+    for (int i = 0; i < systems.size; i++) {
+      systems.get(i).setProcessing(processing);
+    }
+  }
+
+  /**
+   * Sets length of simulation tick. {@link Messages} are then updated in each tick
+   * @param fixedTimestep zero to update simulation with frame time
+   */
+  public void setFixedTimestep(float fixedTimestep) {
+    this.fixedTimestep = fixedTimestep;
+    this.accumulator   = 0;
+    messages.setFixedTimestep(fixedTimestep);
+  }
+
+  public float getFixedTimestep() {
+    return fixedTimestep;
+  }
+
+  /**
+   * Returns number of simulation ticks since start
+   * @return
+   */
+  public long getTick() {
+    return tick;
   }
 
   @Override
@@ -56,7 +143,11 @@ public class EntityManager extends PooledEngine implements Disposable {
     removeEntityListener(renderableSystem);
     removeEntityListener(selectableSystem);
     removeAllEntities();
+    removeEntityListener(motorSystem);
     clearPools();
+    messages.setFixedTimestep(0);
+    simulationSystems.clear();
+    renderingSystems.clear();
 
     timerSystem.dispose();
     spriteRenderingSystem.dispose();
@@ -74,5 +165,6 @@ public class EntityManager extends PooledEngine implements Disposable {
     renderableSystem = null;
     timerSystem = null;
     motorSystem = null;
+    messages = null;
   }
 }
@@ -1,17 +1,55 @@
 package de.macbury.expanse.core.entities;
 
 import com.badlogic.ashley.core.Entity;
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.ai.msg.MessageDispatcher;
+import com.badlogic.gdx.ai.GdxAI;
+import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.SnapshotArray;
 import de.macbury.expanse.core.TelegramEvents;
 import de.macbury.expanse.core.entities.components.PositionComponent;
 import de.macbury.expanse.core.entities.components.RobotCPUComponent;
 
 /**
- * Message dispatcher with nicer helper methods to send information
+ * Message dispatcher with nicer helper methods to send information.
+ * Listeners are stored in table indexed by {@link TelegramEvents}. Immediate telegrams are delivered on game thread without locking.
+ * Telegrams for next frame can be sent from any thread. Telegrams for robot go directly to mailbox of its {@link RobotCPUComponent},
+ * that is drained only by that robot, other are pushed to lock free {@link TelegramQueue} of its event and delivered together in {@link Messages#update()}.
+ * Telegrams delayed by frames or seconds wait in {@link TelegramTimerWheel} advanced in {@link Messages#update(float)}.
+ * Every delivery can be measured by {@link TelegramMetrics}
  */
-public class Messages extends MessageDispatcher {
+public class Messages implements TelegramQueue.Consumer {
+  private final SnapshotArray<Telegraph>[] listeners;
+  private final TelegramQueue[] queues;
+  /**
+   * Delayed telegrams, used only on game thread
+   */
+  private final TelegramTimerWheel timerWheel = new TelegramTimerWheel();
+  private final TelegramMetrics metrics       = new TelegramMetrics();
+  /**
+   * Telegrams for immediate dispatch, used only on game thread
+   */
+  private final Pool<Telegram> telegramPool = new Pool<Telegram>() {
+    @Override
+    protected Telegram newObject() {
+      return new Telegram();
+    }
+  };
+  /**
+   * If bigger than zero telegram time is advanced only by simulation ticks of this length
+   */
+  private float fixedTimestep;
+
+  @SuppressWarnings("unchecked")
+  public Messages() {
+    int count      = TelegramEvents.values().length;
+    this.listeners = new SnapshotArray[count];
+    this.queues    = new TelegramQueue[count];
+    for (int i = 0; i < count; i++) {
+      listeners[i] = new SnapshotArray<Telegraph>(false, 4, Telegraph.class);
+      queues[i]    = new TelegramQueue();
+    }
+  }
 
   /**
    * Dispatch message from entity
@@ -20,9 +58,7 @@ public class Messages extends MessageDispatcher {
    * @param payload
    */
   public void dispatchMessage(Telegraph sender, TelegramEvents event, Object payload) {
-    synchronized (this) {
-      dispatchMessage(sender, event.ordinal(), payload);
-    }
+    dispatchMessage(sender, null, event.ordinal(), payload);
   }
 
   /**
@@ -32,39 +68,177 @@ public class Messages extends MessageDispatcher {
    * @param payload
    */
   public void dispatchMessage(Entity sender, TelegramEvents event, Object payload) {
-    synchronized (this) {
-      PositionComponent positionComponent = Components.Position.get(sender);
-      dispatchMessage(positionComponent, event.ordinal(), payload);
-    }
+    PositionComponent positionComponent = Components.Position.get(sender);
+    dispatchMessage(positionComponent, null, event.ordinal(), payload);
+  }
+
+  /**
+   * Dispatch message to all listeners
+   * @param sender
+   * @param message
+   */
+  public void dispatchMessage(Telegraph sender, int message) {
+    dispatchMessage(sender, null, message, null);
+  }
+
+  /**
+   * Dispatch message to receiver, or if it is null to all listeners
+   * @param sender
+   * @param receiver
+   * @param message
+   */
+  public void dispatchMessage(Telegraph sender, Telegraph receiver, int message) {
+    dispatchMessage(sender, receiver, message, null);
+  }
+
+  /**
+   * Deliver telegram now. Must be called on game thread, from other threads use {@link Messages#dispatchInNextFrame(Entity, TelegramEvents, Object)}
+   * @param sender
+   * @param receiver if null telegram is delivered to all listeners of message
+   * @param message
+   * @param extraInfo
+   */
+  public void dispatchMessage(Telegraph sender, Telegraph receiver, int message, Object extraInfo) {
+    Telegram telegram  = telegramPool.obtain();
+    telegram.sender    = sender;
+    telegram.receiver  = receiver;
+    telegram.message   = message;
+    telegram.extraInfo = extraInfo;
+    deliver(telegram);
+    telegramPool.free(telegram);
   }
 
   /**
-   * Dispatch message in two frames to sender
+   * Dispatch message in next frame to sender. Can be called from any thread, see {@link Messages#dispatchToEntity(Entity, Telegraph, TelegramEvents, Object)}
    * @param event
    * @param payload
    */
   public void dispatchInNextFrame(Entity sender, TelegramEvents event, Object payload) {
-    synchronized (this) {
-      RobotCPUComponent robotCPUComponent = Components.RobotCPU.get(sender);
-      dispatchMessage(
-        Gdx.graphics.getDeltaTime(),
-        robotCPUComponent,
-        robotCPUComponent,
-        event.ordinal(),
-        payload
-      );
+    dispatchToEntity(sender, Components.RobotCPU.get(sender), event, payload);
+  }
+
+  /**
+   * Send telegram addressed to entity. It is pushed to mailbox of entity {@link RobotCPUComponent} and delivered only to it when
+   * {@link de.macbury.expanse.core.entities.systems.RobotManagerSystem} processes entity in next frame or simulation tick.
+   * If entity have no cpu telegram is delivered to listeners in next {@link Messages#update()}. Can be called from any thread
+   * @param receiver
+   * @param sender
+   * @param event
+   * @param payload
+   */
+  public void dispatchToEntity(Entity receiver, Telegraph sender, TelegramEvents event, Object payload) {
+    RobotCPUComponent robotCPUComponent = Components.RobotCPU.get(receiver);
+    if (robotCPUComponent != null) {
+      robotCPUComponent.getMailbox().push(sender, robotCPUComponent, event.ordinal(), payload);
+    } else {
+      queues[event.ordinal()].push(sender, null, event.ordinal(), payload);
     }
   }
 
-  @Override
+  /**
+   * Deliver telegram after number of frames, or simulation ticks in tick locked mode. Must be called on game thread
+   * @param sender
+   * @param receiver if null telegram is delivered to all listeners of event
+   * @param event
+   * @param payload
+   * @param frames one means next frame
+   */
+  public void dispatchInFrames(Telegraph sender, Telegraph receiver, TelegramEvents event, Object payload, int frames) {
+    timerWheel.schedule(sender, receiver, event.ordinal(), payload, frames);
+  }
+
+  /**
+   * Deliver telegram after seconds of telegram time, it is never delivered earlier. Must be called on game thread
+   * @param sender
+   * @param receiver if null telegram is delivered to all listeners of event
+   * @param event
+   * @param payload
+   * @param seconds
+   */
+  public void dispatchInSeconds(Telegraph sender, Telegraph receiver, TelegramEvents event, Object payload, float seconds) {
+    timerWheel.scheduleIn(sender, receiver, event.ordinal(), payload, seconds);
+  }
+
+  /**
+   * Deliver all telegrams queued before this call, event by event
+   */
   public void update() {
-    synchronized (this) {
-      super.update();
+    for (int i = 0; i < queues.length; i++) {
+      metrics.queueDrained(i, queues[i].drain(this));
+    }
+  }
+
+  /**
+   * Advance telegram time by delta, deliver queued telegrams and telegrams expired in {@link TelegramTimerWheel}
+   * @param delta
+   */
+  public void update(float delta) {
+    metrics.endFrame(timerWheel.size());
+    GdxAI.getTimepiece().update(delta);
+    update();
+    timerWheel.advance(delta, this);
+  }
+
+  @Override
+  public void onTelegram(Telegram telegram) {
+    deliver(telegram);
+  }
+
+  /**
+   * Pass telegram to its receiver, or if it is null to all listeners of message, and measure it in {@link TelegramMetrics}.
+   * Must be called on game thread
+   * @param telegram
+   */
+  public void deliver(Telegram telegram) {
+    long startedAt = metrics.beginDelivery();
+    if (telegram.receiver != null) {
+      telegram.receiver.handleMessage(telegram);
+    } else {
+      SnapshotArray<Telegraph> eventListeners = listeners[telegram.message];
+      Telegraph[] items                       = eventListeners.begin();
+      for (int i = 0, n = eventListeners.size; i < n; i++) {
+        items[i].handleMessage(telegram);
+      }
+      eventListeners.end();
     }
+    metrics.endDelivery(telegram, startedAt);
+  }
+
+  public TelegramMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Lock telegram time to simulation ticks. {@link Messages#update(float)} must be then called by {@link EntityManager} in each tick instead of every frame
+   * @param fixedTimestep length of tick or zero to use frame time
+   */
+  public void setFixedTimestep(float fixedTimestep) {
+    this.fixedTimestep = fixedTimestep;
+  }
+
+  public float getFixedTimestep() {
+    return fixedTimestep;
+  }
+
+  /**
+   * Returns true if telegram time is advanced by {@link EntityManager} ticks
+   * @return
+   */
+  public boolean isTickLocked() {
+    return fixedTimestep > 0;
   }
 
   /**
-   * Alias to {@link MessageDispatcher#addListener(Telegraph, int)}
+   * Register listener for message
+   * @param listener
+   * @param message
+   */
+  public void addListener(Telegraph listener, int message) {
+    listeners[message].add(listener);
+  }
+
+  /**
+   * Alias to {@link Messages#addListener(Telegraph, int)}
    * @param listener
    * @param event
    */
@@ -73,7 +247,16 @@ public class Messages extends MessageDispatcher {
   }
 
   /**
-   * Alias to {@link MessageDispatcher#removeListener(Telegraph, int)}
+   * Unregister listener for message
+   * @param listener
+   * @param message
+   */
+  public void removeListener(Telegraph listener, int message) {
+    listeners[message].removeValue(listener, true);
+  }
+
+  /**
+   * Alias to {@link Messages#removeListener(Telegraph, int)}
    * @param listener
    * @param event
    */
@@ -81,6 +264,34 @@ public class Messages extends MessageDispatcher {
     removeListener(listener, event.ordinal());
   }
 
+  /**
+   * Removes all listeners
+   */
+  public void clearListeners() {
+    for (SnapshotArray<Telegraph> eventListeners : listeners) {
+      eventListeners.clear();
+    }
+  }
+
+  /**
+   * Removes all queued telegrams
+   */
+  public void clear() {
+    for (TelegramQueue queue : queues) {
+      queue.clear();
+    }
+    timerWheel.clear();
+  }
+
+  /**
+   * Sends {@link TelegramEvents#CollidedWithEntity} to {@link de.macbury.expanse.core.entities.components.MotorComponent} of entity
+   * @param entity moving entity
+   * @param other entity it collided with
+   */
+  public void dispatchCollision(Entity entity, Entity other) {
+    dispatchMessage(Components.Position.get(other), Components.Motor.get(entity), TelegramEvents.CollidedWithEntity.ordinal(), null);
+  }
+
   /**
    * Sends {@link TelegramEvents#StartRobot}
    * @param senderEntity
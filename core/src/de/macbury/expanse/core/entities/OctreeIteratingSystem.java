@@ -4,44 +4,166 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import de.macbury.expanse.core.entities.components.BodyComponent;
 import de.macbury.expanse.core.entities.components.PositionComponent;
 import de.macbury.expanse.core.octree.LevelOctree;
-import de.macbury.expanse.core.octree.OctreeNode;
+import de.macbury.expanse.core.octree.Octree;
 import de.macbury.expanse.core.octree.OctreeObject;
+import de.macbury.expanse.core.octree.ParallelOctreeRetriever;
+import de.macbury.expanse.core.octree.VisibilityCache;
 import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
 
 /**
  * This system iterates over each {@link Entity} which is in {@link Family} and {@link OctreeIteratingSystem#checkObject(OctreeObject)} with {@link OctreeIteratingSystem#checkEntity(Entity)} return true.
- * This system is ideally for frustrum culling and collision detection
+ * This system is ideally for frustrum culling and collision detection. Entities are processed during octree traversal, so no temporary array is filled,
+ * unless {@link #setParallel(boolean)} is enabled
  */
-public abstract class OctreeIteratingSystem extends EntitySystem implements Disposable, OctreeQuery<PositionComponent> {
+public abstract class OctreeIteratingSystem extends EntitySystem implements Disposable, OctreeQuery<PositionComponent>, OctreeVisitor<PositionComponent> {
   protected Family family;
   protected LevelOctree<PositionComponent> octree;
+  private float deltaTime;
+  private ParallelOctreeRetriever<PositionComponent> parallelRetriever;
   private Array<PositionComponent> treeObjects;
+  private VisibilityCache<PositionComponent> staticCache;
+  private VisibilityCache<PositionComponent> dynamicCache;
 
   public OctreeIteratingSystem(LevelOctree<PositionComponent> octree, Family family) {
     this.family       = family;
     this.octree       = octree;
-    this.treeObjects  = new Array<PositionComponent>(1000);
   }
 
   @Override
   public void update(float deltaTime) {
-    octree.retrieve(treeObjects, this);
-    for (int i = 0; i < treeObjects.size; i++) {
-      processEntity(treeObjects.get(i).entity, deltaTime);
+    this.deltaTime   = deltaTime;
+    Matrix4 queryKey = staticCache != null ? getQueryKey() : null;
+    if (queryKey != null) {
+      processCached(octree.getStaticOctree(), staticCache, queryKey);
+      processCached(octree.getDynamicOctree(), dynamicCache, queryKey);
+    } else if (parallelRetriever != null) {
+      parallelRetriever.retrieve(octree, this, treeObjects);
+      for (int i = 0; i < treeObjects.size; i++) {
+        processEntity(treeObjects.get(i).entity, deltaTime);
+      }
+      treeObjects.clear();
+    } else {
+      octree.query(this, this);
     }
-    treeObjects.clear();
+  }
+
+  /**
+   * Query octree on worker threads, and then process found entities on calling thread. After enabling it
+   * {@link #checkNode} and {@link #checkEntity(Entity)} must be thread safe. Ignored on platforms without fork join pool,
+   * see {@link #canRunParallel()}
+   * @param parallel
+   */
+  public void setParallel(boolean parallel) {
+    if (parallel && parallelRetriever == null && canRunParallel()) {
+      parallelRetriever = new ParallelOctreeRetriever<PositionComponent>();
+      treeObjects       = new Array<PositionComponent>(1000);
+    } else if (!parallel && parallelRetriever != null) {
+      parallelRetriever.dispose();
+      parallelRetriever = null;
+      treeObjects       = null;
+    }
+  }
+
+  public boolean isParallel() {
+    return parallelRetriever != null;
+  }
+
+  /**
+   * {@link java.util.concurrent.ForkJoinPool} is available on desktop and on Android since API 21
+   * @return
+   */
+  private static boolean canRunParallel() {
+    if (Gdx.app == null)
+      return true;
+    switch (Gdx.app.getType()) {
+      case Desktop:
+      case HeadlessDesktop:
+        return true;
+      case Android:
+        return Gdx.app.getVersion() >= 21;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Query octree only if query key or octree changed since last frame, otherwise process entities found previously
+   */
+  private void processCached(Octree<PositionComponent> tree, VisibilityCache<PositionComponent> cache, Matrix4 queryKey) {
+    if (!cache.isValid(tree, queryKey)) {
+      Array<PositionComponent> foundObjects = cache.begin(tree, queryKey);
+      if (parallelRetriever != null) {
+        parallelRetriever.retrieve(tree, this, foundObjects);
+      } else {
+        tree.retrieve(foundObjects, this);
+      }
+    }
+
+    Array<PositionComponent> cachedObjects = cache.getObjects();
+    for (int i = 0; i < cachedObjects.size; i++) {
+      processEntity(cachedObjects.get(i).entity, deltaTime);
+    }
+  }
+
+  /**
+   * Reuse query results from previous frame for static and dynamic octree while {@link #getQueryKey()} and octree
+   * generation stay the same
+   * @param cache
+   */
+  public void setVisibilityCache(boolean cache) {
+    if (cache && staticCache == null) {
+      staticCache  = new VisibilityCache<PositionComponent>();
+      dynamicCache = new VisibilityCache<PositionComponent>();
+    } else if (!cache && staticCache != null) {
+      staticCache.dispose();
+      dynamicCache.dispose();
+      staticCache  = null;
+      dynamicCache = null;
+    }
+  }
+
+  /**
+   * Forces new octree query on next update, for example after entity components changed
+   */
+  public void invalidateVisibilityCache() {
+    if (staticCache != null) {
+      staticCache.invalidate();
+      dynamicCache.invalidate();
+    }
+  }
+
+  /**
+   * Matrix describing current query, like camera view projection. Return null if query results should not be cached in this frame
+   * @return
+   */
+  protected Matrix4 getQueryKey() {
+    return null;
+  }
+
+  /**
+   * Process entity as soon as it is found in octree
+   * @param object
+   * @return
+   */
+  @Override
+  public boolean visit(PositionComponent object) {
+    processEntity(object.entity, deltaTime);
+    return true;
   }
 
   protected abstract void processEntity (Entity entity, float deltaTime);
 
   @Override
   public void dispose() {
-    treeObjects.clear();
+    setParallel(false);
+    setVisibilityCache(false);
     octree = null;
     family = null;
   }
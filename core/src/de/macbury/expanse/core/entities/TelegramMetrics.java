@@ -0,0 +1,306 @@
+package de.macbury.expanse.core.entities;
+
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+import de.macbury.expanse.core.TelegramEvents;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Telegram statistics of {@link Messages}: number of telegrams of each {@link TelegramEvents} per frame, histogram of
+ * listener time, depth of queues and optional trace of last telegrams in ring buffer. Nothing is measured until it is enabled.
+ * Used only on game thread
+ */
+public class TelegramMetrics {
+  /**
+   * Listener time buckets, bucket n counts deliveries that took less than 2^n microseconds, last one everything above
+   */
+  public static final int LATENCY_BUCKETS   = 16;
+  public static final int DEFAULT_TRACE_SIZE = 4096;
+  private static boolean defaultEnabled;
+
+  private final int eventCount;
+  private boolean enabled;
+  private long frame;
+
+  private final long[] total;
+  private final int[] frameCount;
+  private final int[] lastFrameCount;
+  private final int[] peakFrameCount;
+  private final long[] listenerNanos;
+  private final int[][] latency;
+  /**
+   * Telegrams found in per event queue in last {@link Messages#update()}
+   */
+  private final int[] queueDepth;
+  private int mailboxDepth;
+  private int lastMailboxDepth;
+  private int peakMailboxDepth;
+  private int timerWheelSize;
+
+  private int traceSize;
+  private long[] traceFrames;
+  private int[] traceEvents;
+  private long[] traceNanos;
+  private Class[] traceSenders;
+  private Class[] traceReceivers;
+  private int traceNext;
+  private int traceCount;
+
+  public TelegramMetrics() {
+    this.eventCount     = TelegramEvents.values().length;
+    this.total          = new long[eventCount];
+    this.frameCount     = new int[eventCount];
+    this.lastFrameCount = new int[eventCount];
+    this.peakFrameCount = new int[eventCount];
+    this.listenerNanos  = new long[eventCount];
+    this.latency        = new int[eventCount][LATENCY_BUCKETS];
+    this.queueDepth     = new int[eventCount];
+    this.enabled        = defaultEnabled;
+    if (enabled)
+      setTraceSize(DEFAULT_TRACE_SIZE);
+  }
+
+  /**
+   * Enable metrics in every new {@link Messages}, for debug builds
+   * @param enabled
+   */
+  public static void setDefaultEnabled(boolean enabled) {
+    defaultEnabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Keep last telegrams in ring buffer, see {@link TelegramMetrics#dumpTrace(FileHandle)}
+   * @param size number of remembered telegrams or zero to disable trace
+   */
+  public void setTraceSize(int size) {
+    this.traceSize      = Math.max(0, size);
+    this.traceFrames    = new long[traceSize];
+    this.traceEvents    = new int[traceSize];
+    this.traceNanos     = new long[traceSize];
+    this.traceSenders   = new Class[traceSize];
+    this.traceReceivers = new Class[traceSize];
+    this.traceNext      = 0;
+    this.traceCount     = 0;
+  }
+
+  public boolean isTracing() {
+    return traceSize > 0;
+  }
+
+  /**
+   * Called before telegram is passed to listeners
+   * @return start time or zero if metrics are disabled
+   */
+  protected long beginDelivery() {
+    return enabled ? TimeUtils.nanoTime() : 0;
+  }
+
+  /**
+   * Called after all listeners handled telegram
+   * @param telegram
+   * @param startedAt value returned by {@link TelegramMetrics#beginDelivery()}
+   */
+  protected void endDelivery(Telegram telegram, long startedAt) {
+    if (!enabled || startedAt == 0)
+      return;
+    long nanos  = TimeUtils.nanoTime() - startedAt;
+    int message = telegram.message;
+    if (message < 0 || message >= eventCount)
+      return;
+
+    total[message]++;
+    frameCount[message]++;
+    listenerNanos[message] += nanos;
+    latency[message][bucket(nanos)]++;
+
+    if (traceSize > 0) {
+      traceFrames[traceNext]    = frame;
+      traceEvents[traceNext]    = message;
+      traceNanos[traceNext]     = nanos;
+      traceSenders[traceNext]   = telegram.sender == null ? null : telegram.sender.getClass();
+      traceReceivers[traceNext] = telegram.receiver == null ? null : telegram.receiver.getClass();
+      traceNext                 = (traceNext + 1) % traceSize;
+      traceCount                = Math.min(traceCount + 1, traceSize);
+    }
+  }
+
+  private static int bucket(long nanos) {
+    long micros = nanos >> 10;
+    return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  protected void queueDrained(int message, int count) {
+    if (enabled)
+      queueDepth[message] = count;
+  }
+
+  /**
+   * Robot drained its mailbox
+   * @param count
+   */
+  public void mailboxDrained(int count) {
+    if (enabled)
+      mailboxDepth += count;
+  }
+
+  /**
+   * Close current frame, counters of this frame became last frame counters
+   * @param timerWheelSize telegrams still waiting in {@link TelegramTimerWheel}
+   */
+  protected void endFrame(int timerWheelSize) {
+    if (!enabled)
+      return;
+    frame++;
+    for (int i = 0; i < eventCount; i++) {
+      lastFrameCount[i] = frameCount[i];
+      peakFrameCount[i] = Math.max(peakFrameCount[i], frameCount[i]);
+      frameCount[i]     = 0;
+    }
+    lastMailboxDepth    = mailboxDepth;
+    peakMailboxDepth    = Math.max(peakMailboxDepth, mailboxDepth);
+    mailboxDepth        = 0;
+    this.timerWheelSize = timerWheelSize;
+  }
+
+  /**
+   * Removes all collected values
+   */
+  public void reset() {
+    for (int i = 0; i < eventCount; i++) {
+      total[i]          = 0;
+      frameCount[i]     = 0;
+      lastFrameCount[i] = 0;
+      peakFrameCount[i] = 0;
+      listenerNanos[i]  = 0;
+      queueDepth[i]     = 0;
+      for (int b = 0; b < LATENCY_BUCKETS; b++) {
+        latency[i][b] = 0;
+      }
+    }
+    mailboxDepth = lastMailboxDepth = peakMailboxDepth = timerWheelSize = 0;
+    traceNext    = traceCount = 0;
+  }
+
+  public long getTotal(TelegramEvents event) {
+    return total[event.ordinal()];
+  }
+
+  /**
+   * Telegrams of event delivered in last frame
+   * @param event
+   * @return
+   */
+  public int getLastFrameCount(TelegramEvents event) {
+    return lastFrameCount[event.ordinal()];
+  }
+
+  public int getPeakFrameCount(TelegramEvents event) {
+    return peakFrameCount[event.ordinal()];
+  }
+
+  /**
+   * Average time spent in listeners for one telegram of event
+   * @param event
+   * @return
+   */
+  public long getAverageListenerNanos(TelegramEvents event) {
+    int i = event.ordinal();
+    return total[i] == 0 ? 0 : listenerNanos[i] / total[i];
+  }
+
+  /**
+   * Upper bound of listener time for given part of telegrams, read from histogram
+   * @param event
+   * @param percentile from 0 to 1
+   * @return time in microseconds
+   */
+  public long getListenerMicrosPercentile(TelegramEvents event, float percentile) {
+    int i       = event.ordinal();
+    long needed = (long)Math.ceil(total[i] * percentile);
+    long sum    = 0;
+    for (int b = 0; b < LATENCY_BUCKETS; b++) {
+      sum += latency[i][b];
+      if (sum >= needed && sum > 0)
+        return 1L << b;
+    }
+    return 0;
+  }
+
+  public int getQueueDepth(TelegramEvents event) {
+    return queueDepth[event.ordinal()];
+  }
+
+  /**
+   * Telegrams drained from all robot mailboxes in last frame
+   * @return
+   */
+  public int getMailboxDepth() {
+    return lastMailboxDepth;
+  }
+
+  public int getPeakMailboxDepth() {
+    return peakMailboxDepth;
+  }
+
+  public int getTimerWheelSize() {
+    return timerWheelSize;
+  }
+
+  /**
+   * Write traced telegrams from oldest to file, one per line
+   * @param file
+   */
+  public void dumpTrace(FileHandle file) {
+    Writer writer = file.writer(false, "UTF-8");
+    try {
+      writer.write("frame\tevent\tmicros\tsender\treceiver\n");
+      TelegramEvents[] events = TelegramEvents.values();
+      int start               = (traceNext - traceCount + traceSize) % Math.max(1, traceSize);
+      for (int n = 0; n < traceCount; n++) {
+        int i = (start + n) % traceSize;
+        writer.write(
+          traceFrames[i] + "\t" + events[traceEvents[i]] + "\t" + (traceNanos[i] / 1000) + "\t" +
+          name(traceSenders[i], "-") + "\t" + name(traceReceivers[i], "all") + "\n"
+        );
+      }
+    } catch (IOException e) {
+      throw new GdxRuntimeException("Could not dump telegram trace to " + file, e);
+    } finally {
+      StreamUtils.closeQuietly(writer);
+    }
+  }
+
+  private static String name(Class type, String empty) {
+    return type == null ? empty : type.getSimpleName();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("Telegrams last frame (peak) avg/p99 us queue\n");
+    for (TelegramEvents event : TelegramEvents.values()) {
+      int i = event.ordinal();
+      if (total[i] == 0)
+        continue;
+      builder.append(event).append(": ").append(lastFrameCount[i]).append(" (").append(peakFrameCount[i]).append(") ")
+             .append(getAverageListenerNanos(event) / 1000).append("/").append(getListenerMicrosPercentile(event, 0.99f))
+             .append(" ").append(queueDepth[i]).append("\n");
+    }
+    builder.append("Mailboxes: ").append(lastMailboxDepth).append(" (").append(peakMailboxDepth).append(")\n");
+    builder.append("Timer wheel: ").append(timerWheelSize);
+    return builder.toString();
+  }
+}
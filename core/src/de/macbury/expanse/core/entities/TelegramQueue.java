@@ -0,0 +1,103 @@
+package de.macbury.expanse.core.entities;
+
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock free multiple producer single consumer queue of telegrams. Any thread can {@link TelegramQueue#push(Telegraph, Telegraph, int, Object)},
+ * only game thread can {@link TelegramQueue#drain(Consumer)}. Each node is telegram itself, so nothing else is allocated
+ */
+public class TelegramQueue {
+  /**
+   * Receives drained telegrams
+   */
+  public interface Consumer {
+    public void onTelegram(Telegram telegram);
+  }
+
+  private static class Node extends Telegram {
+    volatile Node next;
+  }
+
+  /**
+   * Last pushed node, swapped by producers
+   */
+  private final AtomicReference<Node> head;
+  /**
+   * Last consumed node, used only by consumer
+   */
+  private Node tail;
+
+  public TelegramQueue() {
+    Node stub = new Node();
+    this.head = new AtomicReference<Node>(stub);
+    this.tail = stub;
+  }
+
+  /**
+   * Add telegram. Can be called from any thread
+   * @param sender
+   * @param receiver
+   * @param message
+   * @param extraInfo
+   */
+  public void push(Telegraph sender, Telegraph receiver, int message, Object extraInfo) {
+    Node node      = new Node();
+    node.sender    = sender;
+    node.receiver  = receiver;
+    node.message   = message;
+    node.extraInfo = extraInfo;
+    Node previous  = head.getAndSet(node);
+    previous.next  = node;
+  }
+
+  /**
+   * Pass to consumer all telegrams pushed before this call. Telegrams pushed by consumer while draining wait for next drain.
+   * Called only by consumer
+   * @param consumer
+   * @return number of drained telegrams
+   */
+  public int drain(Consumer consumer) {
+    Node last = head.get();
+    int count = 0;
+    while (tail != last) {
+      Node next = tail.next;
+      if (next == null) {
+        /**
+         * Producer swapped head but did not link node yet
+         */
+        Thread.yield();
+        continue;
+      }
+      tail.reset();
+      tail = next;
+      consumer.onTelegram(next);
+      count++;
+    }
+    tail.reset();
+    return count;
+  }
+
+  public boolean isEmpty() {
+    return head.get() == tail;
+  }
+
+  /**
+   * Removes all pushed telegrams. Called only by consumer
+   */
+  public void clear() {
+    Node last = head.get();
+    while (tail != last) {
+      Node next = tail.next;
+      if (next == null) {
+        Thread.yield();
+        continue;
+      }
+      tail.reset();
+      tail = next;
+    }
+    tail.reset();
+  }
+}
@@ -0,0 +1,200 @@
+package de.macbury.expanse.core.entities;
+
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Frame indexed timer wheel for delayed telegrams. Each slot holds linked list of telegrams, insertion is O(1) and
+ * every {@link TelegramTimerWheel#advance(float, TelegramQueue.Consumer)} expires whole slot at once.
+ * Telegrams delayed by more frames than wheel size wait additional rounds in its slot. Used only on game thread
+ */
+public class TelegramTimerWheel {
+  public static final int DEFAULT_SIZE = 256;
+
+  private static class Entry extends Telegram {
+    Entry next;
+    /**
+     * How many times slot must be visited before telegram expires
+     */
+    int rounds;
+    /**
+     * Time when telegram should be delivered, or negative if it is delayed only by frames
+     */
+    float deadline;
+
+    @Override
+    public void reset() {
+      super.reset();
+      next     = null;
+      rounds   = 0;
+      deadline = -1;
+    }
+  }
+
+  private final Entry[] slots;
+  private final int mask;
+  private final int bits;
+  private final Pool<Entry> entryPool = new Pool<Entry>() {
+    @Override
+    protected Entry newObject() {
+      return new Entry();
+    }
+  };
+  /**
+   * Number of advanced frames
+   */
+  private long frame;
+  /**
+   * Sum of all advanced deltas in seconds
+   */
+  private float time;
+  /**
+   * Length of last advanced frame, used to convert seconds to frames
+   */
+  private float frameDuration = 1f/60f;
+  private int size;
+
+  public TelegramTimerWheel() {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   * @param slotCount number of slots, rounded up to power of two
+   */
+  public TelegramTimerWheel(int slotCount) {
+    int count  = MathUtils.nextPowerOfTwo(Math.max(2, slotCount));
+    this.slots = new Entry[count];
+    this.mask  = count - 1;
+    this.bits  = Integer.numberOfTrailingZeros(count);
+  }
+
+  /**
+   * Schedule telegram to be delivered after number of frames
+   * @param frames at least one, one means next frame
+   */
+  public void schedule(Telegraph sender, Telegraph receiver, int message, Object extraInfo, int frames) {
+    Entry entry     = entryPool.obtain();
+    entry.sender    = sender;
+    entry.receiver  = receiver;
+    entry.message   = message;
+    entry.extraInfo = extraInfo;
+    entry.deadline  = -1;
+    insert(entry, frames);
+  }
+
+  /**
+   * Schedule telegram to be delivered after seconds. Seconds are converted to frames with length of last frame. Telegram is checked
+   * again after half of remaining frames, so it is never delivered before its time. It is late at most one frame while frames stay shorter
+   * than twice the frame before each check, if frame rate drops more it can be late by more frames
+   * @param seconds
+   */
+  public void scheduleIn(Telegraph sender, Telegraph receiver, int message, Object extraInfo, float seconds) {
+    Entry entry     = entryPool.obtain();
+    entry.sender    = sender;
+    entry.receiver  = receiver;
+    entry.message   = message;
+    entry.extraInfo = extraInfo;
+    entry.deadline  = time + seconds;
+    insert(entry, checkFramesFor(seconds));
+  }
+
+  private int framesFor(float seconds) {
+    return Math.max(1, MathUtils.ceil(seconds / frameDuration - MathUtils.FLOAT_ROUNDING_ERROR));
+  }
+
+  /**
+   * Frames after which telegram with deadline is checked again
+   * @param seconds remaining time
+   * @return
+   */
+  private int checkFramesFor(float seconds) {
+    return (framesFor(seconds) + 1) / 2;
+  }
+
+  private void insert(Entry entry, int frames) {
+    frames       = Math.max(1, frames);
+    int slot     = (int)((frame + frames) & mask);
+    entry.rounds = (frames - 1) >> bits;
+    entry.next   = slots[slot];
+    slots[slot]  = entry;
+    size++;
+  }
+
+  /**
+   * Move wheel by one frame and pass expired telegrams to consumer
+   * @param delta length of frame in seconds
+   * @param consumer
+   * @return number of delivered telegrams
+   */
+  public int advance(float delta, TelegramQueue.Consumer consumer) {
+    frame++;
+    time += delta;
+    if (delta > 0) {
+      frameDuration = delta;
+    }
+
+    int slot      = (int)(frame & mask);
+    Entry entry   = slots[slot];
+    slots[slot]   = null;
+    int delivered = 0;
+    /**
+     * Detach whole slot first, so telegrams scheduled by consumer never land in list that is iterated
+     */
+    while (entry != null) {
+      Entry next = entry.next;
+      size--;
+      if (entry.rounds > 0) {
+        entry.rounds--;
+        reinsertInSlot(entry, slot);
+      } else if (entry.deadline > time) {
+        insert(entry, checkFramesFor(entry.deadline - time));
+      } else {
+        consumer.onTelegram(entry);
+        entryPool.free(entry);
+        delivered++;
+      }
+      entry = next;
+    }
+    return delivered;
+  }
+
+  private void reinsertInSlot(Entry entry, int slot) {
+    entry.next  = slots[slot];
+    slots[slot] = entry;
+    size++;
+  }
+
+  /**
+   * Removes all scheduled telegrams
+   */
+  public void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      Entry entry = slots[i];
+      while (entry != null) {
+        Entry next = entry.next;
+        entryPool.free(entry);
+        entry = next;
+      }
+      slots[i] = null;
+    }
+    size = 0;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns number of scheduled telegrams
+   * @return
+   */
+  public int size() {
+    return size;
+  }
+
+  public long getFrame() {
+    return frame;
+  }
+}
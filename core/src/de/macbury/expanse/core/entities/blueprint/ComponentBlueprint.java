@@ -28,6 +28,14 @@ public abstract class ComponentBlueprint<T extends Component> implements Disposa
    */
   public abstract void assignDependencies(Assets assets);
 
+  /**
+   * Called on loader thread after all dependencies are loaded. Heavy work like compiling that should not happen in game thread goes here
+   * @param assets
+   */
+  public void loadAsync(Assets assets) {
+
+  }
+
   /**
    * Apply all blueprint configuration to component
    * @param component
@@ -2,21 +2,75 @@ package de.macbury.expanse.core.entities.components;
 
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.assets.AssetDescriptor;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.Pool;
-import de.macbury.expanse.core.entities.Components;
-import de.macbury.expanse.core.octree.OctreeNode;
+import de.macbury.expanse.core.assets.Assets;
+import de.macbury.expanse.core.entities.Messages;
+import de.macbury.expanse.core.entities.blueprint.ComponentBlueprint;
+import de.macbury.expanse.core.octree.Octree;
 import de.macbury.expanse.core.octree.OctreeObject;
 
 /**
- * This component describe entity size and position in world
+ * This component describe entity size and position in world. Used by {@link de.macbury.expanse.core.entities.systems.CollisionSystem}
+ * for collision between entities
  */
 public class BodyComponent extends BoundingBox implements Component, Pool.Poolable, OctreeObject {
   public boolean isStatic;
-  public OctreeNode parent;
+  public Octree parent;
+  public int octreeSlot = -1;
   public Entity entity;
+  /**
+   * Size of body, if zero then {@link PositionComponent#dimension} is used
+   */
   public Vector3 dimension = new Vector3();
+  /**
+   * Last position where body was not colliding with other bodies. Until {@link BodyComponent#hasFreePosition} is true
+   * it is last accepted position of body that was spawned overlapping others
+   */
+  public Vector3 lastFreePosition = new Vector3();
+  /**
+   * True if {@link BodyComponent#lastFreePosition} passed collision check
+   */
+  public boolean hasFreePosition;
+  /**
+   * Volume shared with other bodies at {@link BodyComponent#lastFreePosition}, used while body have no free position
+   */
+  public float overlap;
+  private Vector3 halfDimenTemp   = new Vector3();
+
+  /**
+   * Place body centered at position
+   * @param position
+   */
+  public void update(PositionComponent position) {
+    if (dimension.isZero()) {
+      halfDimenTemp.set(position.dimension).scl(0.5f);
+    } else {
+      halfDimenTemp.set(dimension).scl(0.5f);
+    }
+    min.set(position).sub(halfDimenTemp);
+    max.set(position).add(halfDimenTemp);
+    set(min, max);
+  }
+
+  /**
+   * Volume of part shared with other body
+   * @param other
+   * @return zero if bodies do not intersect
+   */
+  public float overlapVolume(BoundingBox other) {
+    float width  = Math.min(max.x, other.max.x) - Math.max(min.x, other.min.x);
+    float height = Math.min(max.y, other.max.y) - Math.max(min.y, other.min.y);
+    float depth  = Math.min(max.z, other.max.z) - Math.max(min.z, other.min.z);
+    if (width <= 0 || height <= 0 || depth <= 0)
+      return 0;
+    return width * height * depth;
+  }
 
   @Override
   public BoundingBox getBoundingBox(BoundingBox outBox) {
@@ -24,17 +78,76 @@ public class BodyComponent extends BoundingBox implements Component, Pool.Poolab
   }
 
   @Override
-  public void setOctreeParent(OctreeNode parent) {
+  public void setOctreeParent(Octree parent) {
     this.parent = parent;
   }
 
+  @Override
+  public Octree getOctreeParent() {
+    return parent;
+  }
+
   @Override
   public void reset() {
     entity = null;
+    isStatic = false;
+    dimension.setZero();
+    lastFreePosition.setZero();
+    hasFreePosition = false;
+    overlap         = 0;
+    inf();
     setOctreeParent(null);
+    setOctreeSlot(-1);
+  }
+
+  @Override
+  public void setOctreeSlot(int slot) {
+    this.octreeSlot = slot;
+  }
+
+  @Override
+  public int getOctreeSlot() {
+    return octreeSlot;
   }
 
   public void setEntity(Entity entity) {
     this.entity = entity;
   }
+
+  public static class Blueprint extends ComponentBlueprint<BodyComponent> {
+    public Vector3 dimension;
+
+    @Override
+    public void prepareDependencies(Array<AssetDescriptor> dependencies) {
+
+    }
+
+    @Override
+    public void assignDependencies(Assets assets) {
+
+    }
+
+    @Override
+    public void applyTo(BodyComponent component, Entity target, Messages messages) {
+      component.setEntity(target);
+      if (dimension != null)
+        component.dimension.set(dimension);
+    }
+
+    @Override
+    public void load(JsonValue source, Json json) {
+      if (source.has("dimension"))
+        dimension = json.readValue(Vector3.class, source.get("dimension"));
+    }
+
+    @Override
+    public void save(Json target, BodyComponent source) {
+      target.writeValue("dimension", source.dimension);
+    }
+
+    @Override
+    public void dispose() {
+
+    }
+  }
 }
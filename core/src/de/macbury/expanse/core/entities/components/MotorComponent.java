@@ -12,21 +12,11 @@ import de.macbury.expanse.core.entities.blueprint.ComponentBlueprint;
 import de.macbury.expanse.core.entities.states.RobotMotorState;
 
 /**
- * This component contains all required information for movement using robot motor
+ * This component contains all required information for movement using robot motor.
+ * Movement progress is stored in {@link MotorStore} slot assigned by {@link de.macbury.expanse.core.entities.systems.MotorSystem},
+ * until then motor is finished
  */
 public class MotorComponent extends BaseFSMComponent<RobotMotorState> {
-  public Vector3 startPosition  = new Vector3();
-  public Vector3 targetPosition = new Vector3();
-
-  /**
-   * Progress of movement
-   */
-  public float rotationAlpha = 1.0f;
-
-  /**
-   * Progress of movement
-   */
-  public float moveAlpha = 1.0f;
   /**
    * Speed of motor
    */
@@ -41,32 +31,51 @@ public class MotorComponent extends BaseFSMComponent<RobotMotorState> {
    */
   public int rotateBy;
 
-  public float startRotation;
-  public float targetRotation;
+  MotorStore store;
+  int slot = -1;
 
   @Override
   public void reset() {
-    startPosition.setZero();
-    targetPosition.setZero();
-    startRotation = 0.0f;
-    targetRotation = 0.0f;
-    moveAlpha = 1.0f;
-    rotationAlpha = 1.0f;
-    speed = 0;
+    if (store != null)
+      store.remove(this);
+    speed    = 0;
+    distance = 0;
     rotateBy = 0;
   }
 
+  /**
+   * Slot in {@link MotorStore} or -1 if motor is not in any
+   * @return
+   */
+  public int getSlot() {
+    return slot;
+  }
+
+  public MotorStore getStore() {
+    return store;
+  }
+
   public boolean finishedMoving() {
-    return moveAlpha >= 1.0;
+    return store == null || store.moveAlpha[slot] >= 1.0;
   }
 
   public boolean finishedRotation() {
-    return rotationAlpha >= 1.0;
+    return store == null || store.rotationAlpha[slot] >= 1.0;
+  }
+
+  /**
+   * Stops movement at current position
+   */
+  public void finishMoving() {
+    if (store != null)
+      store.moveAlpha[slot] = 1.0f;
   }
 
   public void finishAlpha() {
-    moveAlpha     = 1.0f;
-    rotationAlpha = 1.0f;
+    if (store != null) {
+      store.moveAlpha[slot]     = 1.0f;
+      store.rotationAlpha[slot] = 1.0f;
+    }
   }
 
   public static class Blueprint extends ComponentBlueprint<MotorComponent> {
@@ -0,0 +1,129 @@
+package de.macbury.expanse.core.entities.components;
+
+import java.util.Arrays;
+
+/**
+ * Movement interpolation state of all {@link MotorComponent} kept in contiguous arrays indexed by dense slot, so
+ * {@link de.macbury.expanse.core.entities.systems.MotorSystem} can update every robot in one tight loop without component lookups.
+ * Removed slot is filled with last one, so slots stay dense. {@link MotorComponent} is view of its slot
+ */
+public class MotorStore {
+  private static final int DEFAULT_CAPACITY = 64;
+  private int size;
+  public float[] startX;
+  public float[] startY;
+  public float[] startZ;
+  public float[] targetX;
+  public float[] targetY;
+  public float[] targetZ;
+  public float[] moveAlpha;
+  public float[] rotationAlpha;
+  public float[] startRotation;
+  public float[] targetRotation;
+  public float[] speed;
+  /**
+   * Position written by movement in each slot
+   */
+  public PositionComponent[] positions;
+  private MotorComponent[] motors;
+
+  public MotorStore() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public MotorStore(int capacity) {
+    allocate(Math.max(1, capacity));
+  }
+
+  private void allocate(int capacity) {
+    startX         = grow(startX, capacity);
+    startY         = grow(startY, capacity);
+    startZ         = grow(startZ, capacity);
+    targetX        = grow(targetX, capacity);
+    targetY        = grow(targetY, capacity);
+    targetZ        = grow(targetZ, capacity);
+    moveAlpha      = grow(moveAlpha, capacity);
+    rotationAlpha  = grow(rotationAlpha, capacity);
+    startRotation  = grow(startRotation, capacity);
+    targetRotation = grow(targetRotation, capacity);
+    speed          = grow(speed, capacity);
+    positions      = positions == null ? new PositionComponent[capacity] : Arrays.copyOf(positions, capacity);
+    motors         = motors == null ? new MotorComponent[capacity] : Arrays.copyOf(motors, capacity);
+  }
+
+  private static float[] grow(float[] array, int capacity) {
+    return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+  }
+
+  /**
+   * Assign slot to motor, it starts finished at current position
+   * @param motor
+   * @param position
+   * @return slot
+   */
+  public int add(MotorComponent motor, PositionComponent position) {
+    if (motor.store != null)
+      throw new IllegalArgumentException("Motor already have slot " + motor.slot);
+    if (size == motors.length)
+      allocate(size * 2);
+
+    int slot             = size++;
+    startX[slot]         = targetX[slot] = position.x;
+    startY[slot]         = targetY[slot] = position.y;
+    startZ[slot]         = targetZ[slot] = position.z;
+    moveAlpha[slot]      = 1.0f;
+    rotationAlpha[slot]  = 1.0f;
+    startRotation[slot]  = targetRotation[slot] = position.rotationDeg;
+    speed[slot]          = motor.speed;
+    positions[slot]      = position;
+    motors[slot]         = motor;
+    motor.store          = this;
+    motor.slot           = slot;
+    return slot;
+  }
+
+  /**
+   * Free slot of motor and move last slot in its place
+   * @param motor
+   */
+  public void remove(MotorComponent motor) {
+    if (motor.store != this)
+      return;
+    int slot = motor.slot;
+    int last = --size;
+    if (slot != last) {
+      startX[slot]         = startX[last];
+      startY[slot]         = startY[last];
+      startZ[slot]         = startZ[last];
+      targetX[slot]        = targetX[last];
+      targetY[slot]        = targetY[last];
+      targetZ[slot]        = targetZ[last];
+      moveAlpha[slot]      = moveAlpha[last];
+      rotationAlpha[slot]  = rotationAlpha[last];
+      startRotation[slot]  = startRotation[last];
+      targetRotation[slot] = targetRotation[last];
+      speed[slot]          = speed[last];
+      positions[slot]      = positions[last];
+      motors[slot]         = motors[last];
+      motors[slot].slot    = slot;
+    }
+    positions[last] = null;
+    motors[last]    = null;
+    motor.store     = null;
+    motor.slot      = -1;
+  }
+
+  /**
+   * Number of used slots, all of them are before this index
+   * @return
+   */
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    while (size > 0) {
+      remove(motors[size - 1]);
+    }
+  }
+}
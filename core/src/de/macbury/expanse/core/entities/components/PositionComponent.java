@@ -13,7 +13,7 @@ import com.badlogic.gdx.utils.Pool;
 import de.macbury.expanse.core.assets.Assets;
 import de.macbury.expanse.core.entities.Messages;
 import de.macbury.expanse.core.entities.blueprint.ComponentBlueprint;
-import de.macbury.expanse.core.octree.OctreeNode;
+import de.macbury.expanse.core.octree.Octree;
 import de.macbury.expanse.core.octree.OctreeObject;
 
 /**
@@ -21,7 +21,8 @@ import de.macbury.expanse.core.octree.OctreeObject;
  */
 public class PositionComponent extends Vector3 implements Component, Pool.Poolable, OctreeObject, Telegraph {
   public float rotationDeg;
-  public OctreeNode parent;
+  public Octree parent;
+  public int octreeSlot = -1;
   public Entity entity;
   public Vector3 dimension = new Vector3();
   /**
@@ -34,6 +35,7 @@ public class PositionComponent extends Vector3 implements Component, Pool.Poolab
     setZero();
     rotationDeg = 0;
     parent = null;
+    octreeSlot = -1;
     entity = null;
     dimension.set(1,1,1);
   }
@@ -44,10 +46,25 @@ public class PositionComponent extends Vector3 implements Component, Pool.Poolab
   }
 
   @Override
-  public void setOctreeParent(OctreeNode parent) {
+  public void setOctreeParent(Octree parent) {
     this.parent = parent;
   }
 
+  @Override
+  public Octree getOctreeParent() {
+    return parent;
+  }
+
+  @Override
+  public void setOctreeSlot(int slot) {
+    this.octreeSlot = slot;
+  }
+
+  @Override
+  public int getOctreeSlot() {
+    return octreeSlot;
+  }
+
   @Override
   public boolean handleMessage(Telegram msg) {
     return false;
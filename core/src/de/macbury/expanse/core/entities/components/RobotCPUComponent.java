@@ -2,38 +2,116 @@ package de.macbury.expanse.core.entities.components;
 
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.assets.AssetDescriptor;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
+import de.macbury.expanse.core.TelegramEvents;
 import de.macbury.expanse.core.assets.Assets;
 import de.macbury.expanse.core.entities.Messages;
+import de.macbury.expanse.core.entities.TelegramQueue;
 import de.macbury.expanse.core.entities.blueprint.ComponentBlueprint;
 import de.macbury.expanse.core.entities.states.RobotInstructionState;
+import de.macbury.expanse.core.scripts.InstructionQueue;
+import de.macbury.expanse.core.scripts.ScriptCache;
+import de.macbury.expanse.core.scripts.ScriptMetrics;
+import de.macbury.expanse.core.scripts.ScriptProgram;
 import de.macbury.expanse.core.scripts.ScriptRunner;
 
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.RhinoException;
+
+import java.io.IOException;
+
 /**
  * This is main component that handles state machine of robot using {@link RobotInstructionState}.
  */
-public class RobotCPUComponent extends BaseFSMComponent<RobotInstructionState> {
+public class RobotCPUComponent extends BaseFSMComponent<RobotInstructionState> implements InstructionQueue.Consumer, TelegramQueue.Consumer {
   private String source;
+  /**
+   * Source compiled while loading blueprint, null if it must be compiled when script starts
+   */
+  private ScriptProgram program;
   private ScriptRunner scriptRunner;
+  /**
+   * Saved state of paused script, if set script is restored from it instead of starting from beginning
+   */
+  private byte[] scriptState;
+  /**
+   * Instructions pushed by script keywords, drained by {@link de.macbury.expanse.core.entities.systems.RobotManagerSystem}
+   */
+  private final InstructionQueue instructions = new InstructionQueue();
+  /**
+   * Telegrams addressed to this robot, see {@link Messages#dispatchToEntity(Entity, com.badlogic.gdx.ai.msg.Telegraph, TelegramEvents, Object)}
+   */
+  private final TelegramQueue mailbox = new TelegramQueue();
 
   @Override
   public void reset() {
     stop();
-    source = null;
+    source      = null;
+    program     = null;
+    scriptState = null;
+    instructions.clear();
+    mailbox.clear();
+  }
+
+  public InstructionQueue getInstructions() {
+    return instructions;
+  }
+
+  public TelegramQueue getMailbox() {
+    return mailbox;
+  }
+
+  /**
+   * Handle all telegrams sent to this robot mailbox
+   */
+  public void processMailbox() {
+    int count = mailbox.drain(this);
+    if (messages != null)
+      messages.getMetrics().mailboxDrained(count);
+  }
+
+  @Override
+  public void onTelegram(Telegram telegram) {
+    if (messages != null) {
+      messages.deliver(telegram);
+    } else {
+      handleMessage(telegram);
+    }
+  }
+
+  /**
+   * Pass queued instructions to current {@link RobotInstructionState}. Instruction that current state does not accept stays
+   * in queue, for example when script pushed it before {@link TelegramEvents#ScriptStart} was delivered from mailbox
+   */
+  public void processInstructions() {
+    instructions.drain(this);
+  }
+
+  @Override
+  public boolean onInstruction(int opcode, float argument) {
+    return getState().onInstruction(getEntity(), TelegramEvents.from(opcode), argument);
   }
 
+  /**
+   * Replace script runner. Instructions left by previous script are removed
+   * @param scriptRunner
+   */
   public void setScriptRunner(ScriptRunner scriptRunner) {
     if (this.scriptRunner != scriptRunner) {
       stop();
+      instructions.clear();
       this.scriptRunner = scriptRunner;
     }
   }
 
   /**
-   * Starts script runner thread
+   * Schedules script runner to start
    */
   public void start() {
     if (scriptRunner != null)
@@ -41,7 +119,7 @@ public class RobotCPUComponent extends BaseFSMComponent<RobotInstructionState> {
   }
 
   /**
-   * Stops script runner thread and runs {@link ScriptRunner#dispose()}
+   * Stops script runner and runs {@link ScriptRunner#dispose()}
    */
   public void stop() {
     if (scriptRunner != null)
@@ -54,9 +132,54 @@ public class RobotCPUComponent extends BaseFSMComponent<RobotInstructionState> {
   }
 
   public void setSource(String source) {
+    if (this.source == null || !this.source.equals(source))
+      this.program = null;
     this.source = source;
   }
 
+  public ScriptProgram getProgram() {
+    return program;
+  }
+
+  /**
+   * Sets compiled form of {@link RobotCPUComponent#getSource()}
+   * @param program
+   */
+  public void setProgram(ScriptProgram program) {
+    this.program = program;
+  }
+
+  public byte[] getScriptState() {
+    return scriptState;
+  }
+
+  public void setScriptState(byte[] scriptState) {
+    this.scriptState = scriptState;
+  }
+
+  /**
+   * Serialize current script using {@link ScriptRunner#saveState()}
+   * @return null if script is not paused
+   */
+  public byte[] saveScriptState() {
+    if (scriptRunner == null)
+      return null;
+    try {
+      return scriptRunner.saveState();
+    } catch (IOException e) {
+      throw new GdxRuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns execution statistics of running script
+   * @return null if robot have no script
+   */
+  public ScriptMetrics getScriptMetrics() {
+    ScriptRunner runner = scriptRunner;
+    return runner == null ? null : runner.getMetrics();
+  }
+
   public void resume(Object result) {
     if (this.scriptRunner != null)
       this.scriptRunner.resume(result);
@@ -64,6 +187,8 @@ public class RobotCPUComponent extends BaseFSMComponent<RobotInstructionState> {
 
   public static class Blueprint extends ComponentBlueprint<RobotCPUComponent> {
     private String scriptSource;
+    private ScriptProgram program;
+    private byte[] scriptState;
 
     @Override
     public void prepareDependencies(Array<AssetDescriptor> dependencies) {
@@ -75,25 +200,59 @@ public class RobotCPUComponent extends BaseFSMComponent<RobotInstructionState> {
 
     }
 
+    /**
+     * Compiles script using {@link ScriptCache}, so robot starts without compiling and invalid script fails loading of blueprint
+     * @param assets
+     */
+    @Override
+    public void loadAsync(Assets assets) {
+      Context context = Context.enter();
+      try {
+        program = ScriptCache.getProgram(context, scriptSource);
+      } catch (RhinoException e) {
+        throw new GdxRuntimeException("Invalid robot script: " + e.getMessage(), e);
+      } finally {
+        Context.exit();
+      }
+    }
+
     @Override
     public void applyTo(RobotCPUComponent component, Entity target, Messages messages) {
       component.init(target, messages, RobotInstructionState.Living, RobotInstructionState.WaitForInstruction);
       component.setSource(scriptSource);
+      component.setProgram(program);
+      component.setScriptState(scriptState);
     }
 
     @Override
     public void load(JsonValue source, Json json) {
-      scriptSource = Gdx.files.internal(source.getString("source")).readString();
+      if (source.has("code")) {
+        scriptSource = source.getString("code");
+      } else {
+        scriptSource = Gdx.files.internal(source.getString("source")).readString();
+      }
+
+      if (source.has("state")) {
+        scriptState = Base64Coder.decode(source.getString("state"));
+      }
     }
 
+    /**
+     * Saves script code and state of paused script, so robot continues its program after load
+     * @param target
+     * @param source
+     */
     @Override
     public void save(Json target, RobotCPUComponent source) {
-
+      target.writeValue("code", source.getSource());
+      byte[] state = source.saveScriptState();
+      if (state != null)
+        target.writeValue("state", new String(Base64Coder.encode(state)));
     }
 
     @Override
     public void dispose() {
-
+      program = null;
     }
   }
 }
@@ -24,25 +24,49 @@ public class TimerComponent implements Pool.Poolable, Component {
    * In seconds how much robot need to wait. (Decreases over time until reaches 0)
    */
   public float waitFor;
+  /**
+   * Increased by each wait, so {@link de.macbury.expanse.core.TelegramEvents#WaitFinished} of older wait is ignored.
+   * Never goes back to zero, because telegram can still be scheduled for pooled component
+   */
+  private int waitId;
+
   @Override
   public void reset() {
     runTime = 0;
     waitFor = 0;
+    waitId++;
   }
 
-  public void setWaitFor(float waitForSeconds) {
+  /**
+   * Start new wait
+   * @param waitForSeconds
+   * @return id of this wait
+   */
+  public int setWaitFor(float waitForSeconds) {
     waitFor = waitForSeconds;
+    return ++waitId;
   }
 
   public boolean haveFinishingWaiting() {
     return waitFor <= 0;
   }
 
+  /**
+   * Returns true if wait with this id was not finished or replaced by other wait
+   * @param waitId
+   * @return
+   */
+  public boolean isCurrentWait(int waitId) {
+    return this.waitId == waitId;
+  }
+
   /**
    * Just reset wait for variable to zero
+   * @return id of finished wait
    */
-  public void finishWaiting() {
+  public int finishWaiting() {
     waitFor = 0;
+    return waitId;
   }
 
   public static class Blueprint extends ComponentBlueprint<TimerComponent> {
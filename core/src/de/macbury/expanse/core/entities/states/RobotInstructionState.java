@@ -5,6 +5,7 @@ import com.badlogic.gdx.ai.fsm.State;
 import com.badlogic.gdx.ai.msg.Telegram;
 import de.macbury.expanse.core.TelegramEvents;
 import de.macbury.expanse.core.entities.Components;
+import de.macbury.expanse.core.entities.components.RobotCPUComponent;
 import de.macbury.expanse.core.entities.components.TimerComponent;
 
 /**
@@ -41,28 +42,39 @@ public enum RobotInstructionState implements State<Entity> {
   WaitForInstruction {
     @Override
     public boolean onMessage(Entity reciverEntity, Telegram telegram) {
-      switch (TelegramEvents.values()[telegram.message]) {
+      if (telegram.extraInfo instanceof Number) {
+        return onInstruction(reciverEntity, TelegramEvents.from(telegram), ((Number)telegram.extraInfo).floatValue());
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public boolean onInstruction(Entity reciverEntity, TelegramEvents instruction, float argument) {
+      switch (instruction) {
         /**
-         * Get telegram payload that contains how long should it wait and change state to Wait
+         * Get argument that contains how long should it wait, schedule end of wait and change state to Wait
          */
         case InstructionWait:
-          Components.Timer.get(reciverEntity).setWaitFor((Float)telegram.extraInfo);
-          Components.RobotCPU.get(reciverEntity).changeState(RobotInstructionState.Wait);
+          RobotCPUComponent robotCPUComponent = Components.RobotCPU.get(reciverEntity);
+          int waitId                          = Components.Timer.get(reciverEntity).setWaitFor(argument);
+          robotCPUComponent.getMessages().dispatchInSeconds(robotCPUComponent, robotCPUComponent, TelegramEvents.WaitFinished, waitId, argument);
+          robotCPUComponent.changeState(RobotInstructionState.Wait);
           return true;
 
         /**
-         * Get telegram payload that contains distance and change state to Move
+         * Get argument that contains distance and change state to Move
          */
         case InstructionMove:
-          Components.Motor.get(reciverEntity).distance = (Integer)telegram.extraInfo;
+          Components.Motor.get(reciverEntity).distance = (int)argument;
           Components.RobotCPU.get(reciverEntity).changeState(RobotInstructionState.Move);
           return true;
 
         /**
-         * Get telegram payload that contains distance and change state to Turn
+         * Get argument that contains distance and change state to Turn
          */
         case InstructionTurn:
-          Components.Motor.get(reciverEntity).rotateBy = (Integer)telegram.extraInfo;
+          Components.Motor.get(reciverEntity).rotateBy = (int)argument;
           Components.RobotCPU.get(reciverEntity).changeState(RobotInstructionState.Turn);
           return true;
 
@@ -134,15 +146,17 @@ public enum RobotInstructionState implements State<Entity> {
   },
 
   /**
-   * Waits until {@link TimerComponent#haveFinishingWaiting()} then return to {@link RobotInstructionState#WaitForInstruction}
-   * and resume {@link de.macbury.expanse.core.entities.components.RobotScriptComponent#resume(Object)} with null
+   * Waits for {@link TelegramEvents#WaitFinished} of current {@link TimerComponent} wait from {@link de.macbury.expanse.core.entities.TelegramTimerWheel}, then return
+   * to {@link RobotInstructionState#WaitForInstruction} and resume {@link de.macbury.expanse.core.entities.components.RobotScriptComponent#resume(Object)} with null
    */
   Wait {
     @Override
-    public void update(Entity entity) {
-      if (Components.Timer.get(entity).haveFinishingWaiting()) {
+    public boolean onMessage(Entity entity, Telegram telegram) {
+      if (TelegramEvents.WaitFinished.is(telegram) && Components.Timer.get(entity).isCurrentWait((Integer)telegram.extraInfo)) {
         Components.RobotCPU.get(entity).changeState(RobotInstructionState.WaitForInstruction);
+        return true;
       }
+      return false;
     }
 
     @Override
@@ -172,4 +186,15 @@ public enum RobotInstructionState implements State<Entity> {
   public boolean onMessage(Entity entity, Telegram telegram) {
     return false;
   }
+
+  /**
+   * Handle one of {@link TelegramEvents#RobotInstructionEvents} drained from {@link de.macbury.expanse.core.scripts.InstructionQueue}
+   * @param entity
+   * @param instruction
+   * @param argument
+   * @return true if instruction was handled
+   */
+  public boolean onInstruction(Entity entity, TelegramEvents instruction, float argument) {
+    return false;
+  }
 }
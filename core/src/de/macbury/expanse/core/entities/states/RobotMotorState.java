@@ -37,7 +37,7 @@ public enum RobotMotorState implements State<Entity> {
 
   /**
    * Triggers on enter {@link TelegramEvents#MotorMovementStart}
-   * and on exit {@link TelegramEvents#MotorMovementStop}. If finished moving change state to idle
+   * and on exit {@link TelegramEvents#MotorMovementStop}. If finished moving or {@link TelegramEvents#CollidedWithEntity} change state to idle
    */
   Moving {
     @Override
@@ -52,6 +52,16 @@ public enum RobotMotorState implements State<Entity> {
       }
     }
 
+    @Override
+    public boolean onMessage(Entity entity, Telegram telegram) {
+      if (TelegramEvents.CollidedWithEntity.is(telegram)) {
+        Components.Motor.get(entity).finishMoving();
+        Components.Motor.get(entity).changeState(Idle);
+        return true;
+      }
+      return false;
+    }
+
     @Override
     public void exit(Entity entity) {
       Components.Motor.get(entity).dispatchMessage(TelegramEvents.MotorMovementStop);
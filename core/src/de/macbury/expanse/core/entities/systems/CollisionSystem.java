@@ -5,38 +5,182 @@ import com.badlogic.ashley.core.EntityListener;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.utils.Disposable;
 import de.macbury.expanse.core.entities.Components;
+import de.macbury.expanse.core.entities.Messages;
 import de.macbury.expanse.core.entities.components.BodyComponent;
+import de.macbury.expanse.core.entities.components.MotorComponent;
 import de.macbury.expanse.core.entities.components.PositionComponent;
 import de.macbury.expanse.core.graphics.terrain.ElevationHelper;
 import de.macbury.expanse.core.graphics.terrain.Terrain;
 import de.macbury.expanse.core.octree.LevelOctree;
+import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
 
 /**
- * This system checks each {@link Entity} with {@link PositionComponent} and {@link BodyComponent}
+ * This system checks each {@link Entity} with {@link PositionComponent} and {@link BodyComponent}.
+ * Only entities with moving {@link MotorComponent} are tested against others. Broad phase queries {@link LevelOctree} with box around body
+ * and narrow phase checks {@link BodyComponent} bounds. On collision entity is moved back to its last free position and {@link de.macbury.expanse.core.TelegramEvents#CollidedWithEntity}
+ * is sent to its {@link MotorComponent}. Body that was placed overlapping others have no free position yet, it can move only in way that reduces overlap
  */
-public class CollisionSystem extends IteratingSystem implements Disposable, EntityListener {
+public class CollisionSystem extends IteratingSystem implements Disposable, EntityListener, OctreeQuery<PositionComponent>, OctreeVisitor<PositionComponent> {
   private static final String TAG = "CollisionSystem";
+  /**
+   * Octree is refreshed after this system so dynamic entities there are one frame behind. Broad phase box is expanded by this value
+   */
+  private static final float BROAD_PHASE_MARGIN = 0.5f;
   private LevelOctree<PositionComponent> octree;
   private Terrain terrain;
+  private Messages messages;
+  private BoundingBox broadPhaseBox = new BoundingBox();
+  private Vector3 marginTemp        = new Vector3();
+  /**
+   * How much any body sticks out of its {@link PositionComponent#boundingBox}
+   */
+  private float bodyPadding;
+  /**
+   * Body was removed, so padding is calculated again on next update
+   */
+  private boolean bodyPaddingDirty;
+  private PositionComponent currentPosition;
+  private BodyComponent currentBody;
+  private PositionComponent collidedWith;
+  /**
+   * If true narrow phase sums overlap with all bodies instead of stopping on first
+   */
+  private boolean measureOverlap;
+  private float overlapSum;
 
-  public CollisionSystem(LevelOctree<PositionComponent> octree, Terrain terrain) {
+  public CollisionSystem(LevelOctree<PositionComponent> octree, Terrain terrain, Messages messages) {
     super(Family.all(PositionComponent.class).get());
-    this.octree  = octree;
-    this.terrain = terrain;
+    this.octree   = octree;
+    this.terrain  = terrain;
+    this.messages = messages;
   }
 
 
+  @Override
+  public void update(float deltaTime) {
+    if (bodyPaddingDirty) {
+      recalculateBodyPadding();
+    }
+    super.update(deltaTime);
+  }
+
   @Override
   protected void processEntity(Entity entity, float deltaTime) {
     if (Components.Static.has(entity))
       return;
 
     snapEntityToTerrain(entity);
+
+    if (Components.Body.has(entity)) {
+      PositionComponent position = Components.Position.get(entity);
+      BodyComponent body         = Components.Body.get(entity);
+      body.update(position);
+
+      MotorComponent motor       = Components.Motor.get(entity);
+      if (motor != null && !motor.finishedMoving()) {
+        checkCollision(entity, position, body);
+      } else if (position.getOctreeParent() != null && (!body.hasFreePosition || !body.lastFreePosition.epsilonEquals(position, MathUtils.FLOAT_ROUNDING_ERROR))) {
+        /**
+         * Octree is refreshed after this system, until entity is in it other entities spawned with it are not there too
+         */
+        checkIdle(position, body);
+      }
+    }
+  }
+
+  /**
+   * Remember position of body that does not move by itself only if it is free, or while it have no free position yet
+   * @param position
+   * @param body
+   */
+  private void checkIdle(PositionComponent position, BodyComponent body) {
+    if (findCollision(position, body) == null) {
+      body.lastFreePosition.set(position);
+      body.hasFreePosition = true;
+      body.overlap         = 0;
+    } else if (!body.hasFreePosition) {
+      body.lastFreePosition.set(position);
+      body.overlap = measureOverlap(position, body);
+    }
+  }
+
+  /**
+   * Find first body that collides with entity body. If found move entity back to last free position and notify its motor
+   * @param entity
+   * @param position
+   * @param body
+   */
+  private void checkCollision(Entity entity, PositionComponent position, BodyComponent body) {
+    PositionComponent other = findCollision(position, body);
+
+    if (other == null) {
+      body.lastFreePosition.set(position);
+      body.hasFreePosition = true;
+      body.overlap         = 0;
+    } else if (!body.hasFreePosition && measureOverlap(position, body) <= body.overlap) {
+      /**
+       * Body was placed overlapping others, let it move out of them
+       */
+      body.lastFreePosition.set(position);
+      body.overlap = overlapSum;
+    } else {
+      position.set(body.lastFreePosition);
+      snapEntityToTerrain(entity);
+      body.update(position);
+      messages.dispatchCollision(entity, other.entity);
+    }
+  }
+
+  /**
+   * Find first body that collides with body
+   * @param position
+   * @param body
+   * @return position of colliding entity or null
+   */
+  private PositionComponent findCollision(PositionComponent position, BodyComponent body) {
+    queryBodies(position, body, false);
+    PositionComponent result = collidedWith;
+    collidedWith             = null;
+    return result;
+  }
+
+  /**
+   * Sum volume shared with all bodies around
+   * @param position
+   * @param body
+   * @return
+   */
+  private float measureOverlap(PositionComponent position, BodyComponent body) {
+    overlapSum = 0;
+    queryBodies(position, body, true);
+    collidedWith = null;
+    return overlapSum;
+  }
+
+  private void queryBodies(PositionComponent position, BodyComponent body, boolean measure) {
+    currentPosition = position;
+    currentBody     = body;
+    collidedWith    = null;
+    measureOverlap  = measure;
+
+    marginTemp.set(BROAD_PHASE_MARGIN + bodyPadding, BROAD_PHASE_MARGIN + bodyPadding, BROAD_PHASE_MARGIN + bodyPadding);
+    broadPhaseBox.set(body.min, body.max);
+    broadPhaseBox.set(broadPhaseBox.min.sub(marginTemp), broadPhaseBox.max.add(marginTemp));
+
+    octree.query(this, this);
+
+    currentPosition = null;
+    currentBody     = null;
+    measureOverlap  = false;
   }
 
   private void snapEntityToTerrain(Entity entity) {
@@ -47,23 +191,90 @@ public class CollisionSystem extends IteratingSystem implements Disposable, Enti
 
   }
 
+  @Override
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return nodeBounds.intersects(broadPhaseBox);
+  }
+
+  @Override
+  public boolean checkObject(PositionComponent object) {
+    return object != currentPosition && object.entity != null && object.boundingBox.intersects(broadPhaseBox);
+  }
+
+  /**
+   * Narrow phase, stops on first colliding body or sums overlap with all of them
+   * @param object
+   * @return
+   */
+  @Override
+  public boolean visit(PositionComponent object) {
+    BodyComponent otherBody = Components.Body.get(object.entity);
+    if (otherBody != null && otherBody.intersects(currentBody)) {
+      collidedWith = object;
+      if (measureOverlap) {
+        overlapSum += currentBody.overlapVolume(otherBody);
+        return true;
+      }
+      return false;
+    }
+    return true;
+  }
 
   @Override
   public void dispose() {
-    this.terrain = null;
-    this.octree  = null;
+    this.terrain  = null;
+    this.octree   = null;
+    this.messages = null;
   }
 
   /**
-   * Snap {@link Entity} to terrain on start
+   * Snap {@link Entity} to terrain on start and place its {@link BodyComponent}
    */
   @Override
   public void entityAdded(Entity entity) {
     snapEntityToTerrain(entity);
+
+    if (Components.Body.has(entity)) {
+      PositionComponent position = Components.Position.get(entity);
+      BodyComponent body         = Components.Body.get(entity);
+      body.setEntity(entity);
+      body.isStatic = Components.Static.has(entity);
+      body.update(position);
+      body.lastFreePosition.set(position);
+      body.hasFreePosition = false;
+      body.overlap         = Float.MAX_VALUE;
+
+      bodyPadding = Math.max(bodyPadding, paddingOf(position, body));
+    }
   }
 
   @Override
   public void entityRemoved(Entity entity) {
+    if (Components.Body.has(entity) && Components.Position.has(entity)) {
+      bodyPaddingDirty = true;
+    }
+  }
+
+  /**
+   * How much body sticks out of {@link PositionComponent#boundingBox}
+   * @param position
+   * @param body
+   * @return
+   */
+  private float paddingOf(PositionComponent position, BodyComponent body) {
+    return Math.max(0, Math.max(body.getWidth() - position.dimension.x, Math.max(body.getHeight() - position.dimension.y, body.getDepth() - position.dimension.z)) * 0.5f);
+  }
 
+  private void recalculateBodyPadding() {
+    ImmutableArray<Entity> entities = getEntities();
+    bodyPadding                     = 0;
+    for (int i = 0; i < entities.size(); i++) {
+      Entity entity      = entities.get(i);
+      BodyComponent body = Components.Body.get(entity);
+      if (body != null) {
+        bodyPadding = Math.max(bodyPadding, paddingOf(Components.Position.get(entity), body));
+      }
+    }
+    bodyPaddingDirty = false;
   }
 }
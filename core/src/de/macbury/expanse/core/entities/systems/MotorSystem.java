@@ -1,31 +1,35 @@
 package de.macbury.expanse.core.entities.systems;
 
 import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
-import com.badlogic.ashley.systems.IteratingSystem;
 import com.badlogic.gdx.ai.msg.Telegram;
 import com.badlogic.gdx.ai.msg.Telegraph;
-import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Disposable;
 import de.macbury.expanse.core.TelegramEvents;
 import de.macbury.expanse.core.entities.Components;
 import de.macbury.expanse.core.entities.Messages;
 import de.macbury.expanse.core.entities.components.MotorComponent;
+import de.macbury.expanse.core.entities.components.MotorStore;
 import de.macbury.expanse.core.entities.components.PositionComponent;
 import de.macbury.expanse.core.entities.components.RobotCPUComponent;
 
 /**
- * Updates {@link PositionComponent} with information from {@link MotorComponent}
+ * Updates {@link PositionComponent} with information from {@link MotorComponent}.
+ * Movement of all motors is stored in {@link MotorStore} and updated in one loop over its arrays
  */
 
-public class MotorSystem extends IteratingSystem implements Disposable, Telegraph {
+public class MotorSystem extends EntitySystem implements Disposable, Telegraph, EntityListener {
+  private final Family family;
+  private final MotorStore store = new MotorStore();
   private Messages messages;
-  private Matrix4 tempMat = new Matrix4();
+  private Vector3 tempVec = new Vector3();
 
   public MotorSystem(Messages messages) {
-    super(Family.all(MotorComponent.class, PositionComponent.class).get());
+    super();
+    this.family   = Family.all(MotorComponent.class, PositionComponent.class).get();
     this.messages = messages;
 
     messages.addListener(this, TelegramEvents.MotorMovementStart);
@@ -35,33 +39,40 @@ public class MotorSystem extends IteratingSystem implements Disposable, Telegrap
     messages.addListener(this, TelegramEvents.StopRobot);
   }
 
-  @Override
-  protected void processEntity(Entity entity, float deltaTime) {
-    MotorComponent motorComponent       = Components.Motor.get(entity);
-    PositionComponent positionComponent = Components.Position.get(entity);
-
-    if (!motorComponent.finishedMoving()) {
-      motorComponent.moveAlpha += motorComponent.speed * deltaTime;
-      if (motorComponent.moveAlpha > 1.0){
-        motorComponent.moveAlpha = 1.0f;
-      }
+  public Family getFamily() {
+    return family;
+  }
 
-      positionComponent.set(motorComponent.startPosition).lerp(
-        motorComponent.targetPosition,
-        motorComponent.moveAlpha
-      );
+  public MotorStore getStore() {
+    return store;
+  }
 
-    } else if (!motorComponent.finishedRotation()) {
-      motorComponent.rotationAlpha += motorComponent.speed * deltaTime;
-      if (motorComponent.rotationAlpha > 1.0){
-        motorComponent.rotationAlpha = 1.0f;
+  /**
+   * Move or rotate every motor in {@link MotorStore}, rotation starts when movement is finished
+   * @param deltaTime
+   */
+  @Override
+  public void update(float deltaTime) {
+    float[] moveAlpha          = store.moveAlpha;
+    float[] rotationAlpha      = store.rotationAlpha;
+    float[] speed              = store.speed;
+    PositionComponent[] positions = store.positions;
+
+    for (int i = 0, n = store.size(); i < n; i++) {
+      if (moveAlpha[i] < 1.0f) {
+        float alpha = Math.min(1.0f, moveAlpha[i] + speed[i] * deltaTime);
+        moveAlpha[i] = alpha;
+
+        PositionComponent position = positions[i];
+        position.x = store.startX[i] + (store.targetX[i] - store.startX[i]) * alpha;
+        position.y = store.startY[i] + (store.targetY[i] - store.startY[i]) * alpha;
+        position.z = store.startZ[i] + (store.targetZ[i] - store.startZ[i]) * alpha;
+      } else if (rotationAlpha[i] < 1.0f) {
+        float alpha = Math.min(1.0f, rotationAlpha[i] + speed[i] * deltaTime);
+        rotationAlpha[i] = alpha;
+
+        positions[i].rotationDeg = store.startRotation[i] + (store.targetRotation[i] - store.startRotation[i]) * alpha;
       }
-
-      positionComponent.rotationDeg = MathUtils.lerp(
-        motorComponent.startRotation,
-        motorComponent.targetRotation,
-        motorComponent.rotationAlpha
-      );
     }
   }
 
@@ -70,13 +81,15 @@ public class MotorSystem extends IteratingSystem implements Disposable, Telegrap
    * @param entity
    */
   private boolean calculateRotation(Entity entity) {
-    if (getFamily().matches(entity)) {
-      MotorComponent motorComponent       = Components.Motor.get(entity);
+    MotorComponent motorComponent = Components.Motor.get(entity);
+    if (getFamily().matches(entity) && motorComponent.getStore() == store) {
       PositionComponent positionComponent = Components.Position.get(entity);
+      int slot                            = motorComponent.getSlot();
 
-      motorComponent.startRotation  = positionComponent.rotationDeg;
-      motorComponent.targetRotation = motorComponent.startRotation + motorComponent.rotateBy;
-      motorComponent.rotationAlpha  = 0f;
+      store.startRotation[slot]  = positionComponent.rotationDeg;
+      store.targetRotation[slot] = positionComponent.rotationDeg + motorComponent.rotateBy;
+      store.rotationAlpha[slot]  = 0f;
+      store.speed[slot]          = motorComponent.speed;
 
       return true;
     } else {
@@ -89,17 +102,23 @@ public class MotorSystem extends IteratingSystem implements Disposable, Telegrap
    * @param entity
    */
   private boolean calculateTargetPosition(Entity entity) {
-    if (getFamily().matches(entity)) {
-      MotorComponent motorComponent       = Components.Motor.get(entity);
+    MotorComponent motorComponent = Components.Motor.get(entity);
+    if (getFamily().matches(entity) && motorComponent.getStore() == store) {
       PositionComponent positionComponent = Components.Position.get(entity);
+      int slot                            = motorComponent.getSlot();
 
-      motorComponent.startPosition.set(positionComponent);
-      motorComponent.targetPosition.set(positionComponent).add(0, 0, motorComponent.distance); //TODO change this
-      motorComponent.moveAlpha = 0.0f;
+      tempVec.set(0, 0, motorComponent.distance);
+      tempVec.rotate(Vector3.Y, positionComponent.rotationDeg);
+      tempVec.add(positionComponent);
 
-      motorComponent.targetPosition.set(0, 0, motorComponent.distance);
-      motorComponent.targetPosition.rotate(Vector3.Y, positionComponent.rotationDeg);
-      motorComponent.targetPosition.add(motorComponent.startPosition);
+      store.startX[slot]    = positionComponent.x;
+      store.startY[slot]    = positionComponent.y;
+      store.startZ[slot]    = positionComponent.z;
+      store.targetX[slot]   = tempVec.x;
+      store.targetY[slot]   = tempVec.y;
+      store.targetZ[slot]   = tempVec.z;
+      store.moveAlpha[slot] = 0.0f;
+      store.speed[slot]     = motorComponent.speed;
 
       return true;
     } else {
@@ -107,6 +126,25 @@ public class MotorSystem extends IteratingSystem implements Disposable, Telegrap
     }
   }
 
+  /**
+   * Assign {@link MotorStore} slot to entity
+   * @param entity
+   */
+  @Override
+  public void entityAdded(Entity entity) {
+    if (getFamily().matches(entity)) {
+      store.add(Components.Motor.get(entity), Components.Position.get(entity));
+    }
+  }
+
+  @Override
+  public void entityRemoved(Entity entity) {
+    MotorComponent motorComponent = Components.Motor.get(entity);
+    if (motorComponent != null) {
+      store.remove(motorComponent);
+    }
+  }
+
   @Override
   public void dispose() {
     messages.removeListener(this, TelegramEvents.MotorMovementStart);
@@ -115,6 +153,7 @@ public class MotorSystem extends IteratingSystem implements Disposable, Telegrap
     messages.removeListener(this, TelegramEvents.MotorTurnStop);
     messages.removeListener(this, TelegramEvents.StopRobot);
     messages = null;
+    store.clear();
   }
 
 
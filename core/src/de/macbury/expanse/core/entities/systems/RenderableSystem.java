@@ -13,6 +13,7 @@ import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.utils.Disposable;
+import de.macbury.expanse.core.MyMath;
 import de.macbury.expanse.core.entities.Components;
 import de.macbury.expanse.core.entities.OctreeIteratingSystem;
 import de.macbury.expanse.core.entities.components.*;
@@ -21,8 +22,10 @@ import de.macbury.expanse.core.graphics.LodModelBatch;
 import de.macbury.expanse.core.graphics.camera.GameCamera;
 import de.macbury.expanse.core.graphics.framebuffer.Fbo;
 import de.macbury.expanse.core.graphics.framebuffer.FrameBufferManager;
+import de.macbury.expanse.core.graphics.occlusion.OcclusionBuffer;
+import de.macbury.expanse.core.graphics.terrain.Terrain;
+import de.macbury.expanse.core.graphics.terrain.TerrainOccluder;
 import de.macbury.expanse.core.octree.LevelOctree;
-import de.macbury.expanse.core.octree.OctreeNode;
 
 /**
  * This system finds all {@link Entity} with components {@link de.macbury.expanse.core.entities.components.RenderableComponent} and {@link de.macbury.expanse.core.entities.components.PositionComponent}
@@ -30,6 +33,8 @@ import de.macbury.expanse.core.octree.OctreeNode;
  */
 //TODO separate systems for rendering in color, reflection and glow batch, We can use components to make it use diffrent systems
 public class RenderableSystem extends OctreeIteratingSystem implements Disposable, EntityListener {
+  private final static int OCCLUSION_BUFFER_WIDTH  = 128;
+  private final static int OCCLUSION_BUFFER_HEIGHT = 72;
   private Environment env;
   private FrameBufferManager fb;
   private LodModelBatch modelBatch;
@@ -37,8 +42,14 @@ public class RenderableSystem extends OctreeIteratingSystem implements Disposabl
   private BoundingBox tempBox = new BoundingBox();
   private Vector3 tempVec     = new Vector3();
   private Frustum currentFrustrum;
+  private TerrainOccluder occluder;
+  private OcclusionBuffer occlusionBuffer;
+  /**
+   * True if {@link #occlusionBuffer} is rendered for current frustrum
+   */
+  private boolean occlusionActive;
 
-  public RenderableSystem(LevelOctree<PositionComponent> octree, GameCamera camera, LodModelBatch modelBatch, FrameBufferManager fb, Environment env) {
+  public RenderableSystem(LevelOctree<PositionComponent> octree, GameCamera camera, LodModelBatch modelBatch, FrameBufferManager fb, Environment env, Terrain terrain) {
     super(octree, Family.all(
       PositionComponent.class
     ).one(
@@ -50,6 +61,19 @@ public class RenderableSystem extends OctreeIteratingSystem implements Disposabl
     this.camera     = camera;
     this.modelBatch = modelBatch;
     this.env        = env;
+    this.occluder   = terrain.getOccluder();
+    this.occlusionBuffer = new OcclusionBuffer(OCCLUSION_BUFFER_WIDTH, OCCLUSION_BUFFER_HEIGHT);
+    setParallel(true);
+    setVisibilityCache(true);
+  }
+
+  /**
+   * Visible entities are reused while camera did not move. Debug frustrum is not cached
+   * @return
+   */
+  @Override
+  protected Matrix4 getQueryKey() {
+    return camera.haveDebugFrustrum() ? null : camera.combined;
   }
 
   @Override
@@ -60,6 +84,7 @@ public class RenderableSystem extends OctreeIteratingSystem implements Disposabl
       modelBatch.begin(camera); {
         camera.extendFov(); {
           currentFrustrum = camera.normalOrDebugFrustrum();
+          updateOcclusion();
           super.update(deltaTime);
         } camera.restoreFov();
       } modelBatch.end();
@@ -91,6 +116,27 @@ public class RenderableSystem extends OctreeIteratingSystem implements Disposabl
     }
   }
 
+  /**
+   * Rasterize terrain into occlusion buffer if camera moved. Occlusion is skipped for debug frustrum
+   */
+  private void updateOcclusion() {
+    occlusionActive = occluder != null && !camera.haveDebugFrustrum();
+    if (occlusionActive && !occlusionBuffer.isCurrent(camera.combined)) {
+      occlusionBuffer.begin(camera.combined);
+      occluder.rasterize(occlusionBuffer, currentFrustrum);
+      occlusionBuffer.end();
+    }
+  }
+
+  /**
+   * Check if bounds are in frustrum and are not hidden behind terrain
+   * @param bounds
+   * @return
+   */
+  private boolean isVisible(BoundingBox bounds) {
+    return MyMath.boundsInFrustum(currentFrustrum, bounds) && !(occlusionActive && occlusionBuffer.isOccluded(bounds));
+  }
+
   private void calculateTransformMatrix(ModelComponent modelComponent, PositionComponent positionComponent) {
     Matrix4 transMat = modelComponent.modelInstance.transform;
     transMat.idt();
@@ -105,30 +151,32 @@ public class RenderableSystem extends OctreeIteratingSystem implements Disposabl
     camera     = null;
     fb         = null;
     env        = null;
+    occluder   = null;
   }
 
   /**
-   * Now we check if {@link Entity} {@link BodyComponent} is in frustrum
+   * Now we check if {@link Entity} {@link BodyComponent} is in frustrum and is not hidden behind terrain
    * @param entity enity to check
    * @return
    */
   @Override
   public boolean checkEntity(Entity entity) {
-    return camera.normalOrDebugFrustrum().boundsInFrustum(Components.Position.get(entity).boundingBox);
+    return isVisible(Components.Position.get(entity).boundingBox);
   }
 
   /**
-   * First we check if node is in frustrum
-   * @param node
+   * First we check if node is in frustrum and is not hidden behind terrain
+   * @param nodeBounds
    * @return
    */
   @Override
-  public boolean checkNode(OctreeNode node) {
-    return currentFrustrum.boundsInFrustum(node.getBounds());
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return isVisible(nodeBounds);
   }
 
   @Override
   public void entityAdded(Entity entity) {
+    invalidateVisibilityCache();
     if (Components.Model.has(entity)) {
       ModelComponent modelComponent = Components.Model.get(entity);
 
@@ -140,6 +188,6 @@ public class RenderableSystem extends OctreeIteratingSystem implements Disposabl
 
   @Override
   public void entityRemoved(Entity entity) {
-
+    invalidateVisibilityCache();
   }
 }
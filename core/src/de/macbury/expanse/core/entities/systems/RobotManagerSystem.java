@@ -14,29 +14,47 @@ import de.macbury.expanse.core.entities.Messages;
 import de.macbury.expanse.core.entities.components.RobotCPUComponent;
 import de.macbury.expanse.core.scripts.ScriptRunner;
 import de.macbury.expanse.core.scripts.ScriptRunnerListener;
+import de.macbury.expanse.core.scripts.ScriptScheduler;
 import de.macbury.expanse.game.Keywords;
 import org.mozilla.javascript.ContinuationPending;
 
 /**
- * This system updates state machine, redirect telegrams for {@link TelegramEvents#RobotInstructionEvents} to each {@link Entity} and handles robot script controlling.
+ * This system updates state machine, delivers telegrams from {@link RobotCPUComponent#getMailbox()} and instructions queued by scripts
+ * in {@link RobotCPUComponent#getInstructions()} to each {@link Entity} and handles robot script controlling.
  * To control robot you need two components:
  * {@link RobotCPUComponent}
+ * All robot scripts are run by one shared {@link ScriptScheduler}
  */
 public class RobotManagerSystem extends IteratingSystem implements Disposable, EntityListener, ScriptRunnerListener, Telegraph {
   private static final String TAG = "RobotManagerSystem";
   private Messages messages;
+  private ScriptScheduler scheduler;
 
   public RobotManagerSystem(Messages messages) {
+    this(messages, ScriptScheduler.create());
+  }
+
+  public RobotManagerSystem(Messages messages, ScriptScheduler scheduler) {
     super(Family.all(RobotCPUComponent.class).get());
-    this.messages = messages;
+    this.messages  = messages;
+    this.scheduler = scheduler;
 
     messages.addListener(this, TelegramEvents.StartRobot);
     messages.addListener(this, TelegramEvents.StopRobot);
   }
 
+  @Override
+  public void update(float deltaTime) {
+    super.update(deltaTime);
+    scheduler.update();
+  }
+
   @Override
   protected void processEntity(Entity entity, float deltaTime) {
-    Components.RobotCPU.get(entity).update();
+    RobotCPUComponent robotCPUComponent = Components.RobotCPU.get(entity);
+    robotCPUComponent.processMailbox();
+    robotCPUComponent.processInstructions();
+    robotCPUComponent.update();
   }
 
   /**
@@ -47,50 +65,30 @@ public class RobotManagerSystem extends IteratingSystem implements Disposable, E
   }
 
   /**
-   * Reprograms entity to run updated script
+   * Reprograms entity to run updated script. If {@link RobotCPUComponent} have saved script state, script continues from it
    * @param entity
    */
   private void reprogram(Entity entity) {
     RobotCPUComponent robotCPUComponent       = Components.RobotCPU.get(entity);
-    ScriptRunner robotScriptRunner            = new ScriptRunner(robotCPUComponent.getSource(), new Keywords(entity, messages), false);
+    ScriptRunner robotScriptRunner            = new ScriptRunner(robotCPUComponent.getSource(), new Keywords(entity, messages), false, scheduler);
     robotScriptRunner.addListener(this);
     robotScriptRunner.setOwner(entity);
+    robotScriptRunner.setProgram(robotCPUComponent.getProgram());
+    if (robotCPUComponent.getScriptState() != null) {
+      robotScriptRunner.restoreState(robotCPUComponent.getScriptState());
+      robotCPUComponent.setScriptState(null);
+    }
     robotCPUComponent.setScriptRunner(robotScriptRunner);
     robotScriptRunner.start();
   }
 
   /**
-   * Register all robot {@link TelegramEvents#RobotInstructionEvents} for {@link de.macbury.expanse.Expanse#messages}
-   * @param entity
-   */
-  private void registerListenersForEntity(Entity entity) {
-    RobotCPUComponent robotCPUComponent       = Components.RobotCPU.get(entity);
-
-    for (TelegramEvents event : TelegramEvents.RobotInstructionEvents) {
-      messages.addListener(robotCPUComponent, event.ordinal());
-    }
-  }
-
-  /**
-   * Remove all robot {@link TelegramEvents#RobotInstructionEvents} from {@link de.macbury.expanse.Expanse#messages}
-   * @param entity
-   */
-  private void unregisterListenersForEntity(Entity entity) {
-    RobotCPUComponent robotCPUComponent       = Components.RobotCPU.get(entity);
-
-    for (TelegramEvents event : TelegramEvents.RobotInstructionEvents) {
-      messages.removeListener(robotCPUComponent, event.ordinal());
-    }
-  }
-
-  /**
-   * Build all required telegram listeners and send message to reprogram robot!
+   * Send message to reprogram robot! Robot telegrams are addressed to its mailbox, so it does not listen for any broadcast
    * @param entity
    */
   @Override
   public void entityAdded(Entity entity) {
     if (getFamily().matches(entity)) {
-      registerListenersForEntity(entity);
       messages.dispatchStartRobot(entity);
     }
   }
@@ -98,7 +96,6 @@ public class RobotManagerSystem extends IteratingSystem implements Disposable, E
   @Override
   public void entityRemoved(Entity entity) {
     if (getFamily().matches(entity)) {
-      unregisterListenersForEntity(entity);
       messages.dispatchStopRobot(entity);
     }
   }
@@ -108,6 +105,8 @@ public class RobotManagerSystem extends IteratingSystem implements Disposable, E
     messages.removeListener(this, TelegramEvents.StartRobot);
     messages.removeListener(this, TelegramEvents.StopRobot);
     messages = null;
+    scheduler.dispose();
+    scheduler = null;
   }
 
   @Override
@@ -26,8 +26,8 @@ import de.macbury.expanse.core.entities.OctreeIteratingSystem;
 import de.macbury.expanse.core.entities.components.PositionComponent;
 import de.macbury.expanse.core.entities.components.SelectableComponent;
 import de.macbury.expanse.core.octree.LevelOctree;
-import de.macbury.expanse.core.octree.OctreeNode;
 import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
 import de.macbury.expanse.core.ui.Hud;
 import de.macbury.expanse.core.ui.HudInputListener;
 
@@ -36,7 +36,7 @@ import de.macbury.expanse.core.ui.HudInputListener;
  * System broadcast information about selection using {@link TelegramEvents#SelectedEntity} and {@link TelegramEvents#DeselectedEntity}
  * with {@link PositionComponent} as sender
  */
-public class SelectableSystem extends EntitySystem implements Disposable, OctreeQuery<PositionComponent>, EntityListener {
+public class SelectableSystem extends EntitySystem implements Disposable, OctreeQuery<PositionComponent>, OctreeVisitor<PositionComponent>, EntityListener {
   private static final String TAG = "SelectableSystem";
   private final Family family;
   private Messages messages;
@@ -76,10 +76,7 @@ public class SelectableSystem extends EntitySystem implements Disposable, Octree
     if (button == Input.Buttons.LEFT) {
       unselectEntities();
       mouseSelectableRay.set(worldCamera.getPickRay(Gdx.input.getX(), Gdx.input.getY()));
-      octree.retrieve(selectedObjects, this);
-      for (int i = 0; i < selectedObjects.size; i++) {
-        messages.dispatchMessage(selectedObjects.get(i), TelegramEvents.SelectedEntity, null);
-      }
+      octree.query(this, this);
 
       //Gdx.app.log(TAG, "Selected: " + selectedObjects.size);
       return selectedObjects.size >= 0;
@@ -126,8 +123,8 @@ public class SelectableSystem extends EntitySystem implements Disposable, Octree
   }
 
   @Override
-  public boolean checkNode(OctreeNode node) {
-    return Intersector.intersectRayBoundsFast(mouseSelectableRay, node.getBounds());
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return Intersector.intersectRayBoundsFast(mouseSelectableRay, nodeBounds);
   }
 
   @Override
@@ -140,6 +137,18 @@ public class SelectableSystem extends EntitySystem implements Disposable, Octree
     }
   }
 
+  /**
+   * Select entity hit by mouse ray
+   * @param object
+   * @return
+   */
+  @Override
+  public boolean visit(PositionComponent object) {
+    selectedObjects.add(object);
+    messages.dispatchMessage(object, TelegramEvents.SelectedEntity, null);
+    return true;
+  }
+
   @Override
   public void entityAdded(Entity entity) {
 
@@ -41,7 +41,7 @@ public class TimerSystem extends IteratingSystem implements Disposable, Telegrap
   }
 
   /**
-   * If receive {@link TelegramEvents#StopRobot} stop timer
+   * If receive {@link TelegramEvents#StopRobot} stop timer and finish current wait in next frame
    * @param msg
    * @return
    */
@@ -49,7 +49,8 @@ public class TimerSystem extends IteratingSystem implements Disposable, Telegrap
   public boolean handleMessage(Telegram msg) {
     if (TelegramEvents.StopRobot.is(msg)) {
       RobotCPUComponent robotCPUComponent = (RobotCPUComponent)msg.sender;
-      Components.Timer.get(robotCPUComponent.getEntity()).finishWaiting();
+      int waitId                          = Components.Timer.get(robotCPUComponent.getEntity()).finishWaiting();
+      messages.dispatchInFrames(robotCPUComponent, robotCPUComponent, TelegramEvents.WaitFinished, waitId, 1);
       return true;
     }
     return false;
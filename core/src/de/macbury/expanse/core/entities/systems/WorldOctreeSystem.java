@@ -10,7 +10,7 @@ import de.macbury.expanse.core.entities.Components;
 import de.macbury.expanse.core.entities.components.BodyComponent;
 import de.macbury.expanse.core.entities.components.PositionComponent;
 import de.macbury.expanse.core.octree.LevelOctree;
-import de.macbury.expanse.core.octree.OctreeNode;
+import de.macbury.expanse.core.octree.Octree;
 
 /**
  * This class refreshes bounding boxes for each {@link BodyComponent} and additionaly
@@ -25,6 +25,14 @@ public class WorldOctreeSystem extends IteratingSystem implements Disposable, En
    * If true this will clear static octree and add all {@link Entity} with {@link de.macbury.expanse.core.entities.components.StaticComponent}
    */
   private boolean refreshStaticOctree;
+  /**
+   * If true only {@link Entity} that changed position or dimension are moved in dynamic octree, otherwise dynamic octree is rebuild every frame
+   */
+  private boolean incremental = true;
+  /**
+   * How many objects have been moved or removed from dynamic octree since last collapse
+   */
+  private int relocatedCount;
 
   public WorldOctreeSystem(LevelOctree<PositionComponent> octree) {
     super(Family.all(PositionComponent.class).get());
@@ -38,11 +46,17 @@ public class WorldOctreeSystem extends IteratingSystem implements Disposable, En
 
   @Override
   public void update(float deltaTime) {
-    octree.getDynamicOctree().clear();
+    if (!incremental)
+      octree.getDynamicOctree().clear();
     if (refreshStaticOctree)
       octree.getStaticOctree().clear();
     super.update(deltaTime);
     refreshStaticOctree = false;
+
+    if (relocatedCount > 0) {
+      octree.getDynamicOctree().collapse();
+      relocatedCount = 0;
+    }
   }
 
   /**
@@ -56,12 +70,36 @@ public class WorldOctreeSystem extends IteratingSystem implements Disposable, En
       if (refreshStaticOctree) {
         calculateBoundingBoxAndInsertIntoOctree(entity, octree.getStaticOctree());
       }
+    } else if (incremental) {
+      calculateBoundingBoxAndRelocateInOctree(entity, octree.getDynamicOctree());
     } else {
       calculateBoundingBoxAndInsertIntoOctree(entity, octree.getDynamicOctree());
     }
   }
 
-  private void calculateBoundingBoxAndInsertIntoOctree(Entity entity, OctreeNode<PositionComponent> targetOctree) {
+  /**
+   * Calculate bounding box and move {@link Entity} in octree only if its position or dimension changed since last frame
+   * @param entity
+   * @param targetOctree
+   */
+  private void calculateBoundingBoxAndRelocateInOctree(Entity entity, Octree<PositionComponent> targetOctree) {
+    PositionComponent positionComponent = Components.Position.get(entity);
+
+    halfDimenTemp.set(positionComponent.dimension).scl(0.5f);
+    minVecTemp.set(positionComponent).sub(halfDimenTemp);
+    maxVecTemp.set(positionComponent).add(halfDimenTemp);
+
+    if (positionComponent.parent != null && positionComponent.boundingBox.min.equals(minVecTemp) && positionComponent.boundingBox.max.equals(maxVecTemp))
+      return;
+
+    positionComponent.entity = entity;
+    positionComponent.boundingBox.set(minVecTemp, maxVecTemp);
+    if (positionComponent.parent != null)
+      relocatedCount++;
+    targetOctree.relocate(positionComponent);
+  }
+
+  private void calculateBoundingBoxAndInsertIntoOctree(Entity entity, Octree<PositionComponent> targetOctree) {
     PositionComponent positionComponent = Components.Position.get(entity);
 
     halfDimenTemp.set(positionComponent.dimension).scl(0.5f);
@@ -84,6 +122,23 @@ public class WorldOctreeSystem extends IteratingSystem implements Disposable, En
   public void entityRemoved(Entity entity) {
     if (Components.Static.has(entity)) {
       refreshStaticOctree = true;
+    } else if (Components.Position.has(entity) && octree.getDynamicOctree().remove(Components.Position.get(entity))) {
+      relocatedCount++;
+    }
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Switch between moving only changed {@link Entity} and rebuilding whole dynamic octree every frame
+   * @param incremental
+   */
+  public void setIncremental(boolean incremental) {
+    if (this.incremental != incremental) {
+      octree.getDynamicOctree().clear();
+      this.incremental = incremental;
     }
   }
 }
@@ -0,0 +1,239 @@
+package de.macbury.expanse.core.graphics.occlusion;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.collision.BoundingBox;
+
+import java.util.Arrays;
+
+/**
+ * Low resolution software depth buffer used to reject objects hidden behind occluders before they are sent to gpu.
+ * Each occluder triangle is written with depth of its farthest vertex, and every level of depth hierarchy keeps farthest
+ * depth of 2x2 texels from level below, so depth test is conservative. Texels are written when their center is inside triangle,
+ * so texels on silhouette are covered only partially. Tested rectangle is expanded by one texel to step over them After {@link #end()} buffer is only read,
+ * and {@link #isOccluded(BoundingBox)} can be called from many threads
+ */
+public class OcclusionBuffer {
+  /**
+   * Vertices closer than this (in clip space w) are treated as crossing near plane
+   */
+  private final static float NEAR_W = 0.001f;
+  /**
+   * Hierarchy level is chosen so tested rectangle is not bigger than this many texels
+   */
+  private final static int MAX_TEST_TEXELS = 8;
+  private final int width;
+  private final int height;
+  private final float[][] levels;
+  private final int[] levelWidths;
+  private final int[] levelHeights;
+  private final float[] viewProjection;
+  private boolean ready;
+
+  public OcclusionBuffer(int width, int height) {
+    this.width          = width;
+    this.height         = height;
+    this.viewProjection = new float[16];
+
+    int levelCount = 1;
+    for (int size = Math.max(width, height); size > 1; size = (size + 1) / 2) {
+      levelCount++;
+    }
+
+    this.levels       = new float[levelCount][];
+    this.levelWidths  = new int[levelCount];
+    this.levelHeights = new int[levelCount];
+    int levelWidth    = width;
+    int levelHeight   = height;
+    for (int level = 0; level < levelCount; level++) {
+      levels[level]       = new float[levelWidth * levelHeight];
+      levelWidths[level]  = levelWidth;
+      levelHeights[level] = levelHeight;
+      levelWidth          = Math.max(1, (levelWidth + 1) / 2);
+      levelHeight         = Math.max(1, (levelHeight + 1) / 2);
+    }
+  }
+
+  /**
+   * Check if buffer was already rendered with this view projection
+   * @param viewProjection
+   * @return
+   */
+  public boolean isCurrent(Matrix4 viewProjection) {
+    return ready && Arrays.equals(this.viewProjection, viewProjection.val);
+  }
+
+  /**
+   * Clears depth and starts rasterizing occluders
+   * @param viewProjection camera combined matrix
+   */
+  public void begin(Matrix4 viewProjection) {
+    System.arraycopy(viewProjection.val, 0, this.viewProjection, 0, 16);
+    Arrays.fill(levels[0], 1f);
+    ready = false;
+  }
+
+  /**
+   * Rasterize triangle in world space. Triangles crossing near plane are skipped
+   */
+  public void triangle(float x0, float y0, float z0, float x1, float y1, float z1, float x2, float y2, float z2) {
+    final float[] m = viewProjection;
+    float w0 = m[Matrix4.M30] * x0 + m[Matrix4.M31] * y0 + m[Matrix4.M32] * z0 + m[Matrix4.M33];
+    float w1 = m[Matrix4.M30] * x1 + m[Matrix4.M31] * y1 + m[Matrix4.M32] * z1 + m[Matrix4.M33];
+    float w2 = m[Matrix4.M30] * x2 + m[Matrix4.M31] * y2 + m[Matrix4.M32] * z2 + m[Matrix4.M33];
+    if (w0 < NEAR_W || w1 < NEAR_W || w2 < NEAR_W)
+      return;
+
+    float sx0 = screenX(x0, y0, z0, w0);
+    float sy0 = screenY(x0, y0, z0, w0);
+    float sx1 = screenX(x1, y1, z1, w1);
+    float sy1 = screenY(x1, y1, z1, w1);
+    float sx2 = screenX(x2, y2, z2, w2);
+    float sy2 = screenY(x2, y2, z2, w2);
+
+    float depth = Math.max(depth(x0, y0, z0, w0), Math.max(depth(x1, y1, z1, w1), depth(x2, y2, z2, w2)));
+    if (depth >= 1f)
+      return;
+
+    float area = (sx1 - sx0) * (sy2 - sy0) - (sy1 - sy0) * (sx2 - sx0);
+    if (area == 0f)
+      return;
+    if (area < 0f) {
+      float tx = sx1; sx1 = sx2; sx2 = tx;
+      float ty = sy1; sy1 = sy2; sy2 = ty;
+    }
+
+    int minX = Math.max(0, (int)Math.floor(Math.min(sx0, Math.min(sx1, sx2))));
+    int maxX = Math.min(width - 1, (int)Math.ceil(Math.max(sx0, Math.max(sx1, sx2))));
+    int minY = Math.max(0, (int)Math.floor(Math.min(sy0, Math.min(sy1, sy2))));
+    int maxY = Math.min(height - 1, (int)Math.ceil(Math.max(sy0, Math.max(sy1, sy2))));
+
+    final float[] depthBuffer = levels[0];
+    for (int py = minY; py <= maxY; py++) {
+      float cy = py + 0.5f;
+      for (int px = minX; px <= maxX; px++) {
+        float cx = px + 0.5f;
+        if ((sx1 - sx0) * (cy - sy0) - (sy1 - sy0) * (cx - sx0) < 0f) continue;
+        if ((sx2 - sx1) * (cy - sy1) - (sy2 - sy1) * (cx - sx1) < 0f) continue;
+        if ((sx0 - sx2) * (cy - sy2) - (sy0 - sy2) * (cx - sx2) < 0f) continue;
+        int index = py * width + px;
+        if (depth < depthBuffer[index])
+          depthBuffer[index] = depth;
+      }
+    }
+  }
+
+  /**
+   * Builds depth hierarchy. After this buffer can be tested
+   */
+  public void end() {
+    for (int level = 1; level < levels.length; level++) {
+      float[] source     = levels[level - 1];
+      float[] target     = levels[level];
+      int sourceWidth    = levelWidths[level - 1];
+      int sourceHeight   = levelHeights[level - 1];
+      int targetWidth    = levelWidths[level];
+      int targetHeight   = levelHeights[level];
+
+      for (int y = 0; y < targetHeight; y++) {
+        int sy0 = y * 2;
+        int sy1 = Math.min(sy0 + 1, sourceHeight - 1);
+        for (int x = 0; x < targetWidth; x++) {
+          int sx0 = x * 2;
+          int sx1 = Math.min(sx0 + 1, sourceWidth - 1);
+          target[y * targetWidth + x] = Math.max(
+            Math.max(source[sy0 * sourceWidth + sx0], source[sy0 * sourceWidth + sx1]),
+            Math.max(source[sy1 * sourceWidth + sx0], source[sy1 * sourceWidth + sx1])
+          );
+        }
+      }
+    }
+    ready = true;
+  }
+
+  /**
+   * Check if whole box is behind occluders. Rectangle of box on screen is expanded by one texel on chosen level, so box that sticks out
+   * above partially covered texel on silhouette is compared also with texels behind silhouette. Boxes crossing near plane or outside of screen are never occluded
+   * @param box
+   * @return
+   */
+  public boolean isOccluded(BoundingBox box) {
+    if (!ready)
+      return false;
+
+    float minX     = Float.MAX_VALUE;
+    float minY     = Float.MAX_VALUE;
+    float maxX     = -Float.MAX_VALUE;
+    float maxY     = -Float.MAX_VALUE;
+    float minDepth = Float.MAX_VALUE;
+    for (int corner = 0; corner < 8; corner++) {
+      float x = (corner & 1) == 0 ? box.min.x : box.max.x;
+      float y = (corner & 2) == 0 ? box.min.y : box.max.y;
+      float z = (corner & 4) == 0 ? box.min.z : box.max.z;
+      float w = viewProjection[Matrix4.M30] * x + viewProjection[Matrix4.M31] * y + viewProjection[Matrix4.M32] * z + viewProjection[Matrix4.M33];
+      if (w < NEAR_W)
+        return false;
+
+      float sx = screenX(x, y, z, w);
+      float sy = screenY(x, y, z, w);
+      minX     = Math.min(minX, sx);
+      maxX     = Math.max(maxX, sx);
+      minY     = Math.min(minY, sy);
+      maxY     = Math.max(maxY, sy);
+      minDepth = Math.min(minDepth, depth(x, y, z, w));
+    }
+
+    if (maxX < 0 || maxY < 0 || minX >= width || minY >= height)
+      return false;
+
+    int left   = Math.max(0, (int)Math.floor(minX));
+    int right  = Math.min(width - 1, (int)Math.floor(maxX));
+    int bottom = Math.max(0, (int)Math.floor(minY));
+    int top    = Math.min(height - 1, (int)Math.floor(maxY));
+
+    int level = 0;
+    while (level < levels.length - 1 && (right - left >= MAX_TEST_TEXELS || top - bottom >= MAX_TEST_TEXELS)) {
+      left   >>= 1;
+      right  >>= 1;
+      bottom >>= 1;
+      top    >>= 1;
+      level++;
+    }
+
+    final float[] depthBuffer = levels[level];
+    int levelWidth            = levelWidths[level];
+    left                      = Math.max(0, left - 1);
+    bottom                    = Math.max(0, bottom - 1);
+    right                     = Math.min(levelWidth - 1, right + 1);
+    top                       = Math.min(levelHeights[level] - 1, top + 1);
+    for (int y = bottom; y <= top; y++) {
+      for (int x = left; x <= right; x++) {
+        if (depthBuffer[y * levelWidth + x] >= minDepth)
+          return false;
+      }
+    }
+    return true;
+  }
+
+  private float screenX(float x, float y, float z, float w) {
+    float clipX = viewProjection[Matrix4.M00] * x + viewProjection[Matrix4.M01] * y + viewProjection[Matrix4.M02] * z + viewProjection[Matrix4.M03];
+    return (clipX / w * 0.5f + 0.5f) * width;
+  }
+
+  private float screenY(float x, float y, float z, float w) {
+    float clipY = viewProjection[Matrix4.M10] * x + viewProjection[Matrix4.M11] * y + viewProjection[Matrix4.M12] * z + viewProjection[Matrix4.M13];
+    return (clipY / w * 0.5f + 0.5f) * height;
+  }
+
+  private float depth(float x, float y, float z, float w) {
+    float clipZ = viewProjection[Matrix4.M20] * x + viewProjection[Matrix4.M21] * y + viewProjection[Matrix4.M22] * z + viewProjection[Matrix4.M23];
+    return clipZ / w;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+}
@@ -32,11 +32,13 @@ public class Terrain implements Disposable, RTSCameraListener {
   private Vector3 tempVecB = new Vector3();
   private TerrainData terrainData;
   private TerrainAssembler terrainAssembler;
+  private TerrainOccluder occluder;
 
   public Terrain(TerrainData terrainData) {
     this.terrainData      = terrainData;
     this.terrainAssembler = new TerrainAssembler(terrainData, GL20.GL_TRIANGLES);
     this.elevation        = new ElevationHelper(terrainData);
+    this.occluder         = new TerrainOccluder(terrainData, Lod.Low);
     calculateCameraBoundingBox();
   }
 
@@ -79,6 +81,15 @@ public class Terrain implements Disposable, RTSCameraListener {
     terrainData.dispose();
     terrainAssembler.dispose();
     elevation.dispose();
+    occluder = null;
+  }
+
+  /**
+   * Simplified terrain used for occlusion culling
+   * @return
+   */
+  public TerrainOccluder getOccluder() {
+    return occluder;
   }
 
   /**
@@ -0,0 +1,113 @@
+package de.macbury.expanse.core.graphics.terrain;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import de.macbury.expanse.core.graphics.Lod;
+import de.macbury.expanse.core.graphics.occlusion.OcclusionBuffer;
+
+/**
+ * Terrain grid with {@link Lod#Low} resolution used as occluder for {@link OcclusionBuffer}. Each vertex height is lowest
+ * elevation of all cells around it, so occluder surface always stays under real terrain and never hides visible objects
+ */
+public class TerrainOccluder {
+  private final int resolution;
+  private final int gridWidth;
+  private final int gridHeight;
+  private final float[] heights;
+  private final Array<BoundingBox> tileBounds;
+  private final Array<int[]> tileCells;
+
+  public TerrainOccluder(TerrainData terrainData, Lod lod) {
+    this.resolution = lod.resolution;
+    this.gridWidth  = terrainData.getWidth() / resolution + 1;
+    this.gridHeight = terrainData.getHeight() / resolution + 1;
+    this.heights    = new float[gridWidth * gridHeight];
+    this.tileBounds = new Array<BoundingBox>();
+    this.tileCells  = new Array<int[]>();
+
+    buildHeights(terrainData);
+    buildTiles(terrainData);
+  }
+
+  private void buildHeights(TerrainData terrainData) {
+    for (int gz = 0; gz < gridHeight; gz++) {
+      for (int gx = 0; gx < gridWidth; gx++) {
+        int centerX  = gx * resolution;
+        int centerZ  = gz * resolution;
+        float lowest = Float.MAX_VALUE;
+        for (int x = Math.max(0, centerX - resolution); x <= Math.min(terrainData.getWidth(), centerX + resolution); x++) {
+          for (int z = Math.max(0, centerZ - resolution); z <= Math.min(terrainData.getHeight(), centerZ + resolution); z++) {
+            lowest = Math.min(lowest, terrainData.getElevation(x, z));
+          }
+        }
+        heights[gz * gridWidth + gx] = lowest;
+      }
+    }
+  }
+
+  /**
+   * Groups cells in same tiles as {@link TerrainAssembler}, so whole tile can be skipped if it is outside of frustum
+   */
+  private void buildTiles(TerrainData terrainData) {
+    int cellsPerTile = TerrainAssembler.TILE_SIZE / resolution;
+    int tileCountX   = terrainData.getWidth() / TerrainAssembler.TILE_SIZE;
+    int tileCountZ   = terrainData.getHeight() / TerrainAssembler.TILE_SIZE;
+
+    for (int tileX = 0; tileX < tileCountX; tileX++) {
+      for (int tileZ = 0; tileZ < tileCountZ; tileZ++) {
+        int[] cells       = new int[cellsPerTile * cellsPerTile];
+        float minHeight   = Float.MAX_VALUE;
+        float maxHeight   = -Float.MAX_VALUE;
+        int i             = 0;
+        for (int cx = tileX * cellsPerTile; cx < (tileX + 1) * cellsPerTile; cx++) {
+          for (int cz = tileZ * cellsPerTile; cz < (tileZ + 1) * cellsPerTile; cz++) {
+            int cell   = cz * gridWidth + cx;
+            cells[i++] = cell;
+            minHeight  = Math.min(minHeight, Math.min(heights[cell], heights[cell + gridWidth + 1]));
+            maxHeight  = Math.max(maxHeight, Math.max(heights[cell], heights[cell + gridWidth + 1]));
+            minHeight  = Math.min(minHeight, Math.min(heights[cell + 1], heights[cell + gridWidth]));
+            maxHeight  = Math.max(maxHeight, Math.max(heights[cell + 1], heights[cell + gridWidth]));
+          }
+        }
+
+        BoundingBox bounds = new BoundingBox();
+        bounds.min.set(tileX * TerrainAssembler.TILE_SIZE * TerrainAssembler.TRIANGLE_SIZE, minHeight, tileZ * TerrainAssembler.TILE_SIZE * TerrainAssembler.TRIANGLE_SIZE);
+        bounds.max.set((tileX + 1) * TerrainAssembler.TILE_SIZE * TerrainAssembler.TRIANGLE_SIZE, maxHeight, (tileZ + 1) * TerrainAssembler.TILE_SIZE * TerrainAssembler.TRIANGLE_SIZE);
+        bounds.set(bounds.min, bounds.max);
+        tileBounds.add(bounds);
+        tileCells.add(cells);
+      }
+    }
+  }
+
+  /**
+   * Rasterize tiles visible in frustum. Call it between {@link OcclusionBuffer#begin} and {@link OcclusionBuffer#end()}
+   * @param buffer
+   * @param frustum
+   */
+  public void rasterize(OcclusionBuffer buffer, Frustum frustum) {
+    float cellSize = resolution * TerrainAssembler.TRIANGLE_SIZE;
+    for (int tile = 0; tile < tileBounds.size; tile++) {
+      if (!frustum.boundsInFrustum(tileBounds.get(tile)))
+        continue;
+
+      int[] cells = tileCells.get(tile);
+      for (int i = 0; i < cells.length; i++) {
+        int cell = cells[i];
+        float x0 = (cell % gridWidth) * cellSize;
+        float z0 = (cell / gridWidth) * cellSize;
+        float x1 = x0 + cellSize;
+        float z1 = z0 + cellSize;
+
+        float topLeft     = heights[cell];
+        float topRight    = heights[cell + 1];
+        float bottomLeft  = heights[cell + gridWidth];
+        float bottomRight = heights[cell + gridWidth + 1];
+
+        buffer.triangle(x0, topLeft, z0, x1, topRight, z0, x0, bottomLeft, z1);
+        buffer.triangle(x1, topRight, z0, x1, bottomRight, z1, x0, bottomLeft, z1);
+      }
+    }
+  }
+}
@@ -0,0 +1,720 @@
+package de.macbury.expanse.core.octree;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
+
+/**
+ * Linear octree that keeps all nodes in flat primitive arrays instead of {@link OctreeNode} object graph.
+ * Each node is identified by its locational code: sentinel bit at 3 * level followed by morton code of node cell on that level.
+ * Nodes are sorted by this code, so children of each node are stored one after another. Objects are stored in one array, sorted by node.
+ * Object that moves but stays in same node is not touched at all. Inserted objects and objects that changed node wait in pending list
+ * that is checked by queries, and are merged into arrays with one counting pass when there are enough of them.
+ * Arrays are rebuilt from scratch only after {@link FlatOctree#clear()} or when too many nodes became empty
+ */
+public class FlatOctree<E extends OctreeObject> implements Octree<E> {
+  /**
+   * The maximum number of levels to break down to. Key for deepest level must fit in int
+   */
+  public final static int MAX_LEVELS  = 9;
+  private final static int ROOT_KEY   = 1;
+  private final static int RESOLUTION = 1 << MAX_LEVELS;
+  /**
+   * Pending objects are merged into sorted arrays when there is more of them
+   */
+  private final static int MERGE_THRESHOLD = 32;
+
+  private final BoundingBox bounds;
+  private final BoundingBox tempBox;
+  private final BoundingBox nodeBox;
+  private final Vector3 tempMin;
+  private final Vector3 tempMax;
+  private final Array<E> members;
+  private final IntArray tempKeys;
+  /**
+   * Objects that are not in sorted arrays yet
+   */
+  private final Array<E> pending;
+  /**
+   * If true all arrays are rebuilt on next query
+   */
+  private boolean dirty;
+  /**
+   * Number of removed objects in sorted arrays
+   */
+  private int holes;
+  /**
+   * Number of nodes after last full rebuild
+   */
+  private int rebuiltNodeCount;
+  private int generation;
+
+  private int nodeCount;
+  /**
+   * Locational code for each node
+   */
+  private int[] nodeKeys;
+  /**
+   * Six floats for each node: min x, y, z and max x, y, z
+   */
+  private float[] nodeBounds;
+  private int[] firstChild;
+  private int[] childCount;
+  private int[] objectStart;
+  private int[] objectCount;
+  /**
+   * Locational code of node for each member
+   */
+  private int[] memberKeys;
+  private Object[] sortedObjects;
+  /**
+   * Node for each object in {@link FlatOctree#sortedObjects}
+   */
+  private int[] sortedNodes;
+  private int sortedCount;
+  private Object[] mergeObjects;
+  private int[] mergeNodes;
+  private int[] mergeKeys;
+  private int[] nodeRemap;
+  private int[] stack;
+
+  private float cellSizeX;
+  private float cellSizeY;
+  private float cellSizeZ;
+
+  public FlatOctree() {
+    this.bounds        = new BoundingBox();
+    this.tempBox       = new BoundingBox();
+    this.nodeBox       = new BoundingBox();
+    this.tempMin       = new Vector3();
+    this.tempMax       = new Vector3();
+    this.members       = new Array<E>(false, 256);
+    this.tempKeys      = new IntArray(512);
+    this.nodeKeys      = new int[0];
+    this.nodeBounds    = new float[0];
+    this.firstChild    = new int[0];
+    this.childCount    = new int[0];
+    this.objectStart   = new int[0];
+    this.objectCount   = new int[0];
+    this.memberKeys    = new int[0];
+    this.sortedObjects = new Object[0];
+    this.sortedNodes   = new int[0];
+    this.mergeObjects  = new Object[0];
+    this.mergeNodes    = new int[0];
+    this.mergeKeys     = new int[0];
+    this.nodeRemap     = new int[0];
+    this.pending       = new Array<E>(false, MERGE_THRESHOLD * 2);
+    this.stack         = new int[7 * MAX_LEVELS + 8];
+    this.nodeCount     = 0;
+  }
+
+  @Override
+  public void setBounds(BoundingBox box) {
+    bounds.set(box);
+    cellSizeX = bounds.getWidth() / RESOLUTION;
+    cellSizeY = bounds.getHeight() / RESOLUTION;
+    cellSizeZ = bounds.getDepth() / RESOLUTION;
+    clear();
+  }
+
+  public BoundingBox getBounds() {
+    return bounds;
+  }
+
+  @Override
+  public void insert(E object) {
+    if (object.getOctreeParent() != this) {
+      members.add(object);
+      object.setOctreeParent(this);
+      object.setOctreeSlot(-1);
+      if (!dirty)
+        pending.add(object);
+      generation++;
+    }
+  }
+
+  @Override
+  public boolean remove(E object) {
+    if (object.getOctreeParent() == this && members.removeValue(object, true)) {
+      if (!dirty && !detach(object)) {
+        pending.removeValue(object, true);
+      }
+      object.setOctreeParent(null);
+      object.setOctreeSlot(-1);
+      generation++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * If object is still in node that contains it nothing changes, otherwise it is moved to pending list
+   * @param object
+   */
+  @Override
+  public void relocate(E object) {
+    if (object.getOctreeParent() == this) {
+      generation++;
+      if (dirty)
+        return;
+      int slot = object.getOctreeSlot();
+      if (isSorted(object) && nodeKeys[sortedNodes[slot]] == keyFor(object.getBoundingBox(tempBox)))
+        return;
+      if (detach(object))
+        pending.add(object);
+    } else {
+      insert(object);
+    }
+  }
+
+  /**
+   * Object in sorted slot, only objects of type E are stored in {@link FlatOctree#sortedObjects}
+   * @param slot
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  private E objectAt(int slot) {
+    return (E)sortedObjects[slot];
+  }
+
+  private boolean isSorted(E object) {
+    int slot = object.getOctreeSlot();
+    return slot >= 0 && slot < sortedCount && sortedObjects[slot] == object;
+  }
+
+  /**
+   * Leave hole in place of object in sorted arrays
+   * @param object
+   * @return false if object was not in sorted arrays
+   */
+  private boolean detach(E object) {
+    if (!isSorted(object))
+      return false;
+    sortedObjects[object.getOctreeSlot()] = null;
+    object.setOctreeSlot(-1);
+    holes++;
+    return true;
+  }
+
+  /**
+   * Nothing to free here, nodes are rebuilt on next query
+   * @return
+   */
+  @Override
+  public boolean collapse() {
+    return members.size == 0;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < members.size; i++) {
+      members.get(i).setOctreeParent(null);
+    }
+    members.clear();
+    pending.clear();
+    for (int i = 0; i < sortedObjects.length; i++) {
+      sortedObjects[i] = null;
+    }
+    nodeCount   = 0;
+    sortedCount = 0;
+    holes       = 0;
+    dirty       = true;
+    generation++;
+  }
+
+  @Override
+  public void retrieve(Array<E> returnObjects, OctreeQuery<E> query) {
+    rebuildIfDirty();
+    if (nodeCount == 0)
+      return;
+
+    int top      = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int node = stack[--top];
+
+      int end = objectStart[node] + objectCount[node];
+      for (int i = objectStart[node]; i < end; i++) {
+        E object = objectAt(i);
+        if (object != null && query.checkObject(object)) {
+          returnObjects.add(object);
+        }
+      }
+
+      int lastChild = firstChild[node] + childCount[node];
+      for (int child = firstChild[node]; child < lastChild; child++) {
+        if (query.checkNode(getNodeBounds(child, nodeBox))) {
+          stack[top++] = child;
+        }
+      }
+    }
+
+    for (int i = 0; i < pending.size; i++) {
+      E object = pending.get(i);
+      if (query.checkObject(object)) {
+        returnObjects.add(object);
+      }
+    }
+  }
+
+  @Override
+  public boolean query(OctreeQuery<E> query, OctreeVisitor<E> visitor) {
+    rebuildIfDirty();
+    if (nodeCount == 0)
+      return true;
+
+    int top      = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int node = stack[--top];
+
+      int end = objectStart[node] + objectCount[node];
+      for (int i = objectStart[node]; i < end; i++) {
+        E object = objectAt(i);
+        if (object != null && query.checkObject(object) && !visitor.visit(object)) {
+          return false;
+        }
+      }
+
+      int lastChild = firstChild[node] + childCount[node];
+      for (int child = firstChild[node]; child < lastChild; child++) {
+        if (query.checkNode(getNodeBounds(child, nodeBox))) {
+          stack[top++] = child;
+        }
+      }
+    }
+
+    for (int i = 0; i < pending.size; i++) {
+      E object = pending.get(i);
+      if (query.checkObject(object) && !visitor.visit(object)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void retrieve(Array<E> returnObjects) {
+    returnObjects.addAll(members);
+  }
+
+  /**
+   * Number of nodes after last rebuild
+   * @return
+   */
+  public int getNodeCount() {
+    rebuildIfDirty();
+    return nodeCount;
+  }
+
+  /**
+   * Copy bounds of node stored under index to out
+   * @param node
+   * @param out
+   * @return
+   */
+  public BoundingBox getNodeBounds(int node, BoundingBox out) {
+    int offset = node * 6;
+    return out.set(
+      tempMin.set(nodeBounds[offset], nodeBounds[offset + 1], nodeBounds[offset + 2]),
+      tempMax.set(nodeBounds[offset + 3], nodeBounds[offset + 4], nodeBounds[offset + 5])
+    );
+  }
+
+  /**
+   * Number of objects waiting to be merged into sorted arrays
+   * @return
+   */
+  public int getPendingCount() {
+    return pending.size;
+  }
+
+  private void rebuildIfDirty() {
+    if (dirty || nodeCount > rebuiltNodeCount * 2 + MERGE_THRESHOLD) {
+      rebuild();
+      dirty = false;
+    } else if (pending.size > MERGE_THRESHOLD) {
+      merge();
+    }
+  }
+
+  /**
+   * Add nodes required by pending objects, then place sorted and pending objects by node with counting sort.
+   * Only keys of pending objects are calculated, nodes stay sorted so nothing else need to be sorted
+   */
+  private void merge() {
+    int count = pending.size;
+    if (mergeKeys.length < count) {
+      mergeKeys = new int[count];
+    }
+
+    tempKeys.clear();
+    for (int i = 0; i < count; i++) {
+      pending.get(i).getBoundingBox(tempBox);
+      int key      = keyFor(tempBox);
+      mergeKeys[i] = key;
+      while (key > ROOT_KEY && find(key) < 0) {
+        tempKeys.add(key);
+        key >>>= 3;
+      }
+    }
+
+    if (tempKeys.size > 0) {
+      addNodes();
+    }
+
+    int total = sortedCount - holes + count;
+    if (mergeObjects.length < total) {
+      mergeObjects = new Object[total];
+      mergeNodes   = new int[total];
+    }
+
+    for (int node = 0; node < nodeCount; node++) {
+      objectCount[node] = 0;
+    }
+    for (int i = 0; i < sortedCount; i++) {
+      if (sortedObjects[i] != null) {
+        objectCount[sortedNodes[i]]++;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      mergeKeys[i] = find(mergeKeys[i]);
+      objectCount[mergeKeys[i]]++;
+    }
+
+    int start = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      objectStart[node] = start;
+      start            += objectCount[node];
+      objectCount[node] = 0;
+    }
+
+    for (int i = 0; i < sortedCount; i++) {
+      if (sortedObjects[i] != null) {
+        place(objectAt(i), sortedNodes[i]);
+        sortedObjects[i] = null;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      place(pending.get(i), mergeKeys[i]);
+    }
+
+    Object[] objects = sortedObjects;
+    sortedObjects    = mergeObjects;
+    mergeObjects     = objects;
+    int[] nodes      = sortedNodes;
+    sortedNodes      = mergeNodes;
+    mergeNodes       = nodes;
+    sortedCount      = total;
+    holes            = 0;
+    pending.clear();
+  }
+
+  private void place(E object, int node) {
+    int slot           = objectStart[node] + objectCount[node]++;
+    mergeObjects[slot] = object;
+    mergeNodes[slot]   = node;
+    object.setOctreeSlot(slot);
+  }
+
+  /**
+   * Merge missing node keys from {@link FlatOctree#tempKeys} into sorted nodes and link them again.
+   * Node of each sorted object is remapped to its new index
+   */
+  private void addNodes() {
+    tempKeys.sort();
+    int[] keys = tempKeys.items;
+    int unique = 0;
+    for (int i = 0; i < tempKeys.size; i++) {
+      if (unique == 0 || keys[unique - 1] != keys[i]) {
+        keys[unique++] = keys[i];
+      }
+    }
+
+    int oldCount = nodeCount;
+    if (nodeRemap.length < oldCount) {
+      nodeRemap = new int[Math.max(oldCount, nodeRemap.length * 2)];
+    }
+    int[] oldKeys = new int[oldCount];
+    System.arraycopy(nodeKeys, 0, oldKeys, 0, oldCount);
+
+    int newCount = oldCount + unique;
+    if (nodeKeys.length < newCount) {
+      ensureNodeCapacity(newCount);
+    }
+
+    int a = 0, b = 0, node = 0;
+    while (a < oldCount || b < unique) {
+      if (b >= unique || (a < oldCount && oldKeys[a] < keys[b])) {
+        nodeRemap[a]     = node;
+        nodeKeys[node++] = oldKeys[a++];
+      } else {
+        nodeKeys[node++] = keys[b++];
+      }
+    }
+    nodeCount = newCount;
+
+    for (int i = 0; i < sortedCount; i++) {
+      if (sortedObjects[i] != null) {
+        sortedNodes[i] = nodeRemap[sortedNodes[i]];
+      }
+    }
+    linkNodes();
+  }
+
+  /**
+   * Calculate bounds of all nodes and link children to parents. Keys are sorted, so parents of following nodes are sorted too
+   */
+  private void linkNodes() {
+    for (int node = 0; node < nodeCount; node++) {
+      calculateNodeBounds(node);
+      firstChild[node]  = 0;
+      childCount[node]  = 0;
+      objectCount[node] = 0;
+    }
+
+    int parent = 0;
+    for (int node = 1; node < nodeCount; node++) {
+      int parentKey = nodeKeys[node] >>> 3;
+      while (nodeKeys[parent] != parentKey) {
+        parent++;
+      }
+      if (childCount[parent] == 0) {
+        firstChild[parent] = node;
+      }
+      childCount[parent]++;
+    }
+  }
+
+  /**
+   * Calculates node for each object, then builds sorted list of nodes with their ancestors, links children and sorts objects by node
+   */
+  private void rebuild() {
+    int count = members.size;
+    if (memberKeys.length < count) {
+      memberKeys = new int[count];
+    }
+
+    tempKeys.clear();
+    tempKeys.add(ROOT_KEY);
+    for (int i = 0; i < count; i++) {
+      members.get(i).getBoundingBox(tempBox);
+      int key       = keyFor(tempBox);
+      memberKeys[i] = key;
+      while (key > ROOT_KEY) {
+        tempKeys.add(key);
+        key >>>= 3;
+      }
+    }
+
+    tempKeys.sort();
+    int[] keys = tempKeys.items;
+    int unique = 0;
+    for (int i = 0; i < tempKeys.size; i++) {
+      if (unique == 0 || keys[unique - 1] != keys[i]) {
+        keys[unique++] = keys[i];
+      }
+    }
+
+    ensureNodeCapacity(unique);
+    nodeCount        = unique;
+    rebuiltNodeCount = unique;
+    System.arraycopy(keys, 0, nodeKeys, 0, unique);
+    linkNodes();
+
+    for (int i = 0; i < count; i++) {
+      memberKeys[i] = indexOf(memberKeys[i]);
+      objectCount[memberKeys[i]]++;
+    }
+
+    int start = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      objectStart[node] = start;
+      start            += objectCount[node];
+      objectCount[node] = 0;
+    }
+
+    if (sortedObjects.length < count) {
+      sortedObjects = new Object[count];
+      sortedNodes   = new int[count];
+    }
+
+    for (int i = 0; i < count; i++) {
+      int node = memberKeys[i];
+      int slot = objectStart[node] + objectCount[node];
+      E object = members.get(i);
+      sortedObjects[slot] = object;
+      sortedNodes[slot]   = node;
+      object.setOctreeSlot(slot);
+      objectCount[node]++;
+    }
+
+    for (int i = count; i < sortedObjects.length && sortedObjects[i] != null; i++) {
+      sortedObjects[i] = null;
+    }
+    sortedCount = count;
+    holes       = 0;
+    pending.clear();
+  }
+
+  private void ensureNodeCapacity(int capacity) {
+    if (nodeKeys.length < capacity) {
+      int newCapacity = Math.max(capacity, (int)(nodeKeys.length * 1.75f));
+      nodeKeys    = new int[newCapacity];
+      nodeBounds  = new float[newCapacity * 6];
+      firstChild  = new int[newCapacity];
+      childCount  = new int[newCapacity];
+      objectStart = new int[newCapacity];
+      objectCount = new int[newCapacity];
+    }
+  }
+
+  /**
+   * Binary search for node with key
+   * @param key
+   * @return index of node or -1 if there is no such node
+   */
+  private int find(int key) {
+    int low  = 0;
+    int high = nodeCount - 1;
+    while (low <= high) {
+      int mid    = (low + high) >>> 1;
+      int midKey = nodeKeys[mid];
+      if (midKey < key) {
+        low = mid + 1;
+      } else if (midKey > key) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Same as {@link FlatOctree#find(int)}, but returns root if node was not found
+   * @param key
+   * @return
+   */
+  private int indexOf(int key) {
+    int node = find(key);
+    return node < 0 ? 0 : node;
+  }
+
+  /**
+   * Finds deepest node that contains whole bounding box. Objects outside octree bounds are placed in root
+   * @param box
+   * @return locational code of node
+   */
+  private int keyFor(BoundingBox box) {
+    if (!bounds.contains(box))
+      return ROOT_KEY;
+
+    int minX = cell(box.min.x - bounds.min.x, cellSizeX);
+    int minY = cell(box.min.y - bounds.min.y, cellSizeY);
+    int minZ = cell(box.min.z - bounds.min.z, cellSizeZ);
+    int maxX = cell(box.max.x - bounds.min.x, cellSizeX);
+    int maxY = cell(box.max.y - bounds.min.y, cellSizeY);
+    int maxZ = cell(box.max.z - bounds.min.z, cellSizeZ);
+
+    int level = MAX_LEVELS;
+    while (level > 0 && (minX != maxX || minY != maxY || minZ != maxZ)) {
+      minX >>= 1; minY >>= 1; minZ >>= 1;
+      maxX >>= 1; maxY >>= 1; maxZ >>= 1;
+      level--;
+    }
+
+    return (1 << (3 * level)) | morton(minX, minY, minZ);
+  }
+
+  private static int cell(float offset, float cellSize) {
+    if (cellSize <= 0)
+      return 0;
+    int cell = (int)(offset / cellSize);
+    if (cell < 0) {
+      return 0;
+    } else if (cell >= RESOLUTION) {
+      return RESOLUTION - 1;
+    } else {
+      return cell;
+    }
+  }
+
+  private void calculateNodeBounds(int node) {
+    int key       = nodeKeys[node];
+    int level     = (31 - Integer.numberOfLeadingZeros(key)) / 3;
+    int code      = key ^ (1 << (3 * level));
+    int scale     = 1 << (MAX_LEVELS - level);
+    float sizeX   = cellSizeX * scale;
+    float sizeY   = cellSizeY * scale;
+    float sizeZ   = cellSizeZ * scale;
+    float minX    = bounds.min.x + compact(code) * sizeX;
+    float minY    = bounds.min.y + compact(code >>> 1) * sizeY;
+    float minZ    = bounds.min.z + compact(code >>> 2) * sizeZ;
+
+    int offset             = node * 6;
+    nodeBounds[offset]     = minX;
+    nodeBounds[offset + 1] = minY;
+    nodeBounds[offset + 2] = minZ;
+    nodeBounds[offset + 3] = minX + sizeX;
+    nodeBounds[offset + 4] = minY + sizeY;
+    nodeBounds[offset + 5] = minZ + sizeZ;
+  }
+
+  /**
+   * Interleave bits of cell coordinates
+   */
+  public static int morton(int x, int y, int z) {
+    return spread(x) | (spread(y) << 1) | (spread(z) << 2);
+  }
+
+  /**
+   * Inserts two zeros between each of lower 10 bits
+   */
+  private static int spread(int n) {
+    n &= 0x000003ff;
+    n = (n ^ (n << 16)) & 0xff0000ff;
+    n = (n ^ (n << 8))  & 0x0300f00f;
+    n = (n ^ (n << 4))  & 0x030c30c3;
+    n = (n ^ (n << 2))  & 0x09249249;
+    return n;
+  }
+
+  /**
+   * Reverse of {@link FlatOctree#spread(int)}
+   */
+  private static int compact(int n) {
+    n &= 0x09249249;
+    n = (n ^ (n >>> 2))  & 0x030c30c3;
+    n = (n ^ (n >>> 4))  & 0x0300f00f;
+    n = (n ^ (n >>> 8))  & 0xff0000ff;
+    n = (n ^ (n >>> 16)) & 0x000003ff;
+    return n;
+  }
+
+  @Override
+  public int getGeneration() {
+    return generation;
+  }
+
+  @Override
+  public void dispose() {
+    clear();
+    nodeKeys      = new int[0];
+    nodeBounds    = new float[0];
+    firstChild    = new int[0];
+    childCount    = new int[0];
+    objectStart   = new int[0];
+    objectCount   = new int[0];
+    memberKeys    = new int[0];
+    sortedObjects = new Object[0];
+    sortedNodes   = new int[0];
+    mergeObjects  = new Object[0];
+    mergeNodes    = new int[0];
+    mergeKeys     = new int[0];
+    nodeRemap     = new int[0];
+  }
+}
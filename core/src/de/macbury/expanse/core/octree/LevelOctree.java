@@ -4,30 +4,69 @@ import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
 
 /**
  * Level octree containing static octree, and dynamic octree
  */
 public class LevelOctree<C extends OctreeObject> implements Disposable {
-  private final Array<OctreeNode<C>> nodes;
-  private OctreeNode<C> staticOctree;
-  private OctreeNode<C> dynamicOctree;
+  private final Array<Octree<C>> nodes;
+  private Octree<C> staticOctree;
+  private Octree<C> dynamicOctree;
   private int i;
 
   public LevelOctree() {
-    this.nodes         = new Array<OctreeNode<C>>();
-    this.staticOctree  = new OctreeNode<C>();
-    this.dynamicOctree = new OctreeNode<C>();
+    this(1.0f);
+  }
+
+  /**
+   * Creates loose octree if looseness is bigger than 1. Objects are then placed in nodes by their center point, so
+   * objects crossing split planes do not pile up in parent nodes
+   * @param looseness factor used to scale bounds of each sub node. See {@link OctreeNode#DEFAULT_LOOSENESS}
+   */
+  public LevelOctree(float looseness) {
+    this(new OctreeNode<C>(), new OctreeNode<C>());
+    ((OctreeNode<C>)staticOctree).setLooseness(looseness);
+    ((OctreeNode<C>)dynamicOctree).setLooseness(looseness);
+  }
+
+  /**
+   * Creates level octree with custom storage for static and dynamic objects
+   * @param staticOctree
+   * @param dynamicOctree
+   */
+  public LevelOctree(Octree<C> staticOctree, Octree<C> dynamicOctree) {
+    this.nodes         = new Array<Octree<C>>();
+    this.staticOctree  = staticOctree;
+    this.dynamicOctree = dynamicOctree;
     nodes.add(staticOctree);
     nodes.add(dynamicOctree);
     this.i     = 0;
   }
 
+  /**
+   * Creates level octree backed by {@link FlatOctree}. Nodes are stored in flat arrays and rebuilt lazily on query,
+   * which is faster to traverse than pointer based {@link OctreeNode}
+   * @return
+   */
+  public static <C extends OctreeObject> LevelOctree<C> flat() {
+    return new LevelOctree<C>(new FlatOctree<C>(), new FlatOctree<C>());
+  }
+
+  /**
+   * Creates level octree backed by {@link SpatialGrid}. Best for objects spread on heightfield, where y axis does not need to be split
+   * @param cellSize size of grid cell in world units
+   * @return
+   */
+  public static <C extends OctreeObject> LevelOctree<C> grid(float cellSize) {
+    return new LevelOctree<C>(new SpatialGrid<C>(cellSize), new SpatialGrid<C>(cellSize));
+  }
+
   /**
    * This octree contains static objects. Its is only updated after insert or remove on next frame
    * @return
    */
-  public OctreeNode<C> getStaticOctree() {
+  public Octree<C> getStaticOctree() {
     return staticOctree;
   }
 
@@ -35,7 +74,7 @@ public class LevelOctree<C extends OctreeObject> implements Disposable {
    * This octree contains objects that position is updated. It is updated each frame
    * @return
    */
-  public OctreeNode<C> getDynamicOctree() {
+  public Octree<C> getDynamicOctree() {
     return dynamicOctree;
   }
 
@@ -49,9 +88,19 @@ public class LevelOctree<C extends OctreeObject> implements Disposable {
     dynamicOctree.retrieve(returnObjects, query);
   }
 
+  /**
+   * Query static and dynamic octree and pass each found object to visitor. Nothing is allocated during traversal
+   * @param query
+   * @param visitor
+   * @return false if visitor stopped traversal
+   */
+  public boolean query(OctreeQuery<C> query, OctreeVisitor<C> visitor) {
+    return staticOctree.query(query, visitor) && dynamicOctree.query(query, visitor);
+  }
+
   @Override
   public void dispose() {
-    for (OctreeNode node : nodes) {
+    for (Octree node : nodes) {
       node.dispose();
     }
     staticOctree = null;
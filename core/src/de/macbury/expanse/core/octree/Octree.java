@@ -0,0 +1,75 @@
+package de.macbury.expanse.core.octree;
+
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
+
+/**
+ * Storage used by {@link LevelOctree} for static and dynamic objects. Implemented by {@link OctreeNode}, {@link FlatOctree} and {@link SpatialGrid}
+ */
+public interface Octree<E extends OctreeObject> extends Disposable {
+  /**
+   * Sets bounds and removes all objects
+   * @param box
+   */
+  public void setBounds(BoundingBox box);
+
+  /**
+   * Insert the object into octree
+   * @param object
+   */
+  public void insert(E object);
+
+  /**
+   * Remove object from octree
+   * @param object
+   * @return true if object was in octree
+   */
+  public boolean remove(E object);
+
+  /**
+   * Move object that changed its bounding box. If object is not in octree it is inserted
+   * @param object
+   */
+  public void relocate(E object);
+
+  /**
+   * Frees nodes that dont contain any objects
+   * @return true if octree is empty
+   */
+  public boolean collapse();
+
+  /**
+   * Removes all objects
+   */
+  public void clear();
+
+  /**
+   * Return objects that passed {@link OctreeQuery}
+   * @param returnObjects
+   * @param query
+   */
+  public void retrieve(Array<E> returnObjects, OctreeQuery<E> query);
+
+  /**
+   * Pass each object that passed {@link OctreeQuery} to visitor without collecting them in array
+   * @param query
+   * @param visitor
+   * @return false if visitor stopped traversal
+   */
+  public boolean query(OctreeQuery<E> query, OctreeVisitor<E> visitor);
+
+  /**
+   * Returns all objects
+   * @param returnObjects
+   */
+  public void retrieve(Array<E> returnObjects);
+
+  /**
+   * Incremented each time object is inserted, moved or removed. Used to check if previous query results are still valid
+   * @return
+   */
+  public int getGeneration();
+}
@@ -7,11 +7,12 @@ import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.Pool;
 import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
 
 /**
  * This is octree will be used for collision detection and frustrum culling
  */
-public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Disposable {
+public class OctreeNode<E extends OctreeObject> implements Octree<E>, Pool.Poolable, Disposable {
   /**
    * The maximum number of levels to break down to.
    */
@@ -20,6 +21,10 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
    * The maximum number of objects per node.
    */
   public final static int MAX_OBJECTS   = 10;
+  /**
+   * Looseness factor used by loose octree. Bounds of each sub node are scaled by this factor around center of its octant
+   */
+  public final static float DEFAULT_LOOSENESS = 2.0f;
   /**
    * The current level.
    */
@@ -27,10 +32,19 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
   private Array<E>            objects;
   private Array<OctreeNode>   nodes;
   private BoundingBox         bounds;
+  /**
+   * Bounds of octant without looseness. Same as bounds for normal octree
+   */
+  private BoundingBox         tightBounds;
+  private float               looseness;
   private final Vector3       tempA;
   private final Vector3       tempB;
   private final Vector3       tempC;
   private OctreeNode          parent;
+  /**
+   * Incremented in root node each time object is inserted or removed from any node
+   */
+  private int                 generation;
 
   private Vector3             center  = new Vector3();
   private Vector3             min     = new Vector3();
@@ -51,6 +65,8 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
     this.objects  = new Array<E>();
     this.nodes    = new Array<OctreeNode>();
     this.bounds   = new BoundingBox();
+    this.tightBounds = new BoundingBox();
+    this.looseness   = 1.0f;
     this.parent   = null;
     clear();
   }
@@ -75,7 +91,7 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
     if (haveNodes()) {
       for (int i = 0; i < nodes.size; i++) {
         OctreeNode node = nodes.get(i);
-        if (node.getBounds().contains(point)) {
+        if (node.getTightBounds().contains(point)) {
           index = i;
           break;
         }
@@ -91,6 +107,9 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
    */
   public int getIndex(BoundingBox pRect) {
     int index = -1;
+    if (isLoose()) {
+      return getLooseIndex(pRect);
+    }
     for (int i = 0; i < nodes.size; i++) {
       OctreeNode node = nodes.get(i);
       if (node.contains(pRect)) {
@@ -101,6 +120,23 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
     return index;
   }
 
+  /**
+   * In loose octree object is placed in sub node by its center point. If object is too big for loose bounds of this sub node
+   * it stays in parent node
+   * @param pRect The bounds in which to check.
+   * @return Index of the subnode (0-7), or -1 if rect cannot completely fit within a subnode and is part of the parent node.
+   */
+  private int getLooseIndex(BoundingBox pRect) {
+    pRect.getCenter(tempC);
+    for (int i = 0; i < nodes.size; i++) {
+      OctreeNode node = nodes.get(i);
+      if (node.getTightBounds().contains(tempC)) {
+        return node.contains(pRect) ? i : -1;
+      }
+    }
+    return -1;
+  }
+
   /**
    * Is the rect in bounds of current node
    * @param pRect
@@ -131,6 +167,7 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
 
     objects.add(objectToInsert);
     objectToInsert.setOctreeParent(this);
+    markChanged();
 
     if (objects.size > MAX_OBJECTS && level < MAX_LEVELS) {
       if (!haveNodes())
@@ -141,7 +178,7 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
         E currentObject            = objects.get(i);
         int index                  = getIndex(currentObject);
         if (index != -1) {
-          objects.removeValue(currentObject, false);
+          objects.removeIndex(i);
           nodes.get(index).insert(currentObject);
         } else {
           i++;
@@ -151,10 +188,47 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
 
   }
 
+  /**
+   * Move object that changed its bounding box to proper node. Starts from node that object is currently in, and walks up
+   * until it finds first node that contains it. Then inserts object from there. Objects that are not in octree are inserted from this node
+   * @param object
+   */
+  @Override
+  public void relocate(E object) {
+    if (!(object.getOctreeParent() instanceof OctreeNode)) {
+      insert(object);
+    } else {
+      OctreeNode node = (OctreeNode) object.getOctreeParent();
+      node.objects.removeValue(object, true);
+      object.setOctreeParent(null);
+      object.getBoundingBox(tempBox);
+      while (node.getParent() != null && !node.contains(tempBox)) {
+        node = node.getParent();
+      }
+      node.insert(object);
+    }
+  }
+
+  /**
+   * Removes object from octree. If object knows its node, it is removed directly from it
+   * @param object
+   * @return
+   */
+  @Override
   public boolean remove(E object) {
+    if (object.getOctreeParent() instanceof OctreeNode && ((OctreeNode)object.getOctreeParent()).objects.removeValue(object, true)) {
+      object.setOctreeParent(null);
+      markChanged();
+      return true;
+    }
+
     int index = getIndex(object);
     if (index == -1) {
-      return objects.removeValue(object, true);
+      if (objects.removeValue(object, true)) {
+        markChanged();
+        return true;
+      }
+      return false;
     } else {
       return nodes.get(index).remove(object);
     }
@@ -168,24 +242,32 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
    * Split the node into 8 subnodes
    */
   private void split() {
-    center = bounds.getCenter(center);
-    bounds.getMin(min);
-    bounds.getMax(max);
-
-    buildNode(tempA.set(max).set(max.x, max.y, min.z), center, OctreePart.FrontTopLeft);
-    buildNode(tempA.set(min).set(min.x, max.y, min.z), center, OctreePart.FrontTopRight);
-    buildNode(min, center, OctreePart.FrontBottomRight);
-    buildNode(tempA.set(max).set(max.x, min.y, min.z), center, OctreePart.FrontTopLeft);
-    buildNode(tempA.set(min).set(min.x, max.y, max.z), center, OctreePart.BackTopRight);
-    buildNode(max, center, OctreePart.BackTopLeft);
-    buildNode(tempA.set(max).set(min.x, min.y, max.z), center, OctreePart.BackBottomRight);
-    buildNode(tempA.set(max).set(max.x, min.y, max.z), center, OctreePart.BackBottomLeft);
+    center = tightBounds.getCenter(center);
+    tightBounds.getMin(min);
+    tightBounds.getMax(max);
 
+    for (int i = 0; i < OctreePart.PARTS.length; i++) {
+      buildNode(OctreePart.PARTS[i]);
+    }
   }
 
-  private void buildNode(Vector3 min, Vector3 max, OctreePart part) {
-    tempBox.set(min, max);
-    OctreeNode nodeQuadrant = OctreeNode.node(level, tempBox);
+  /**
+   * Builds sub node for octant between center and one corner of this node. Nodes are added in {@link OctreePart#getIndex()} order
+   * @param part
+   */
+  private void buildNode(OctreePart part) {
+    tempA.set(
+      part.isLeft()  ? min.x    : center.x,
+      part.isTop()   ? center.y : min.y,
+      part.isFront() ? min.z    : center.z
+    );
+    tempB.set(
+      part.isLeft()  ? center.x : max.x,
+      part.isTop()   ? max.y    : center.y,
+      part.isFront() ? center.z : max.z
+    );
+    tempBox.set(tempA, tempB);
+    OctreeNode nodeQuadrant = OctreeNode.node(level, tempBox, looseness);
     nodeQuadrant.setParent(this);
     nodes.add(nodeQuadrant);
   }
@@ -225,15 +307,49 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
     return level;
   }
 
+  /**
+   * Bounds used for queries. In loose octree they are bigger than octant
+   * @return
+   */
   public BoundingBox getBounds() {
     return bounds;
   }
 
+  public BoundingBox getTightBounds() {
+    return tightBounds;
+  }
+
   public void setBounds(BoundingBox box) {
     bounds.set(box);
+    tightBounds.set(box);
     clear();
   }
 
+  /**
+   * Scale bounds around center of octant by looseness factor
+   */
+  private void loosenBounds() {
+    tightBounds.getCenter(tempC);
+    tightBounds.getDimensions(tempA).scl(0.5f * looseness);
+    bounds.set(tempB.set(tempC).sub(tempA), tempA.add(tempC));
+  }
+
+  public float getLooseness() {
+    return looseness;
+  }
+
+  /**
+   * Sets looseness factor for this node and for sub nodes created after split. 1 means normal octree
+   * @param looseness
+   */
+  public void setLooseness(float looseness) {
+    this.looseness = Math.max(1.0f, looseness);
+  }
+
+  public boolean isLoose() {
+    return looseness > 1.0f;
+  }
+
   /**
    * Clears octree objects and nodes
    */
@@ -246,12 +362,54 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
       octreeNodePool.free(node);
     }
     nodes.clear();
+    markChanged();
+  }
+
+  /**
+   * Increment generation of root node
+   */
+  private void markChanged() {
+    OctreeNode node = this;
+    while (node.parent != null) {
+      node = node.parent;
+    }
+    node.generation++;
+  }
+
+  @Override
+  public int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns sub nodes to pool if all of them are empty and dont have any sub nodes
+   * @return true if this node is empty and dont have sub nodes
+   */
+  public boolean collapse() {
+    if (haveNodes()) {
+      boolean empty = true;
+      for (int i = 0; i < nodes.size; i++) {
+        if (!nodes.get(i).collapse()) {
+          empty = false;
+        }
+      }
+
+      if (empty) {
+        for (int i = 0; i < nodes.size; i++) {
+          octreeNodePool.free(nodes.get(i));
+        }
+        nodes.clear();
+      }
+    }
+    return !haveNodes() && objects.size == 0;
   }
 
   @Override
   public void reset() {
     this.level = 0;
+    this.looseness = 1.0f;
     this.bounds.set(Vector3.Zero, Vector3.Zero);
+    this.tightBounds.set(Vector3.Zero, Vector3.Zero);
     parent = null;
     clear();
   }
@@ -262,9 +420,16 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
   }
 
   public static OctreeNode node(int parentLevel, BoundingBox box) {
+    return node(parentLevel, box, 1.0f);
+  }
+
+  public static OctreeNode node(int parentLevel, BoundingBox box, float looseness) {
     OctreeNode node = octreeNodePool.obtain();
     node.setLevel(parentLevel + 1);
+    node.setLooseness(looseness);
     node.setBounds(box);
+    if (node.isLoose())
+      node.loosenBounds();
     return node;
   }
 
@@ -300,16 +465,16 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
   }
 
   public void retrieve(Array<E> returnObjects, Frustum frustum, boolean checkObjectsToo) {
-    if (haveNodes()) {
-      for(OctreeNode node : nodes) {
-        if (frustum.boundsInFrustum(node.getBounds())) {
-          node.retrieve(returnObjects, frustum, checkObjectsToo);
-        }
+    for (int i = 0; i < nodes.size; i++) {
+      OctreeNode node = nodes.get(i);
+      if (frustum.boundsInFrustum(node.getBounds())) {
+        node.retrieve(returnObjects, frustum, checkObjectsToo);
       }
     }
 
     if (checkObjectsToo) {
-      for (E object : objects) {
+      for (int i = 0; i < objects.size; i++) {
+        E object = objects.get(i);
         object.getBoundingBox(tempBox);
         if (frustum.boundsInFrustum(tempBox)) {
           returnObjects.add(object);
@@ -321,10 +486,17 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
 
   }
 
+  /**
+   * Return objects from nodes that intersects with bounding box
+   * @param returnObjects
+   * @param object
+   */
   public void retrieve(Array<E> returnObjects, BoundingBox object) {
-    int index = getIndex(object);
-    if (index != -1 && haveNodes()) {
-      nodes.get(index).retrieve(returnObjects, object);
+    for (int i = 0; i < nodes.size; i++) {
+      OctreeNode node = nodes.get(i);
+      if (node.getBounds().intersects(object)) {
+        node.retrieve(returnObjects, object);
+      }
     }
     returnObjects.addAll(objects);
   }
@@ -335,9 +507,11 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
    * @param point
    */
   public void retrieve(Array<E> returnObjects, Vector3 point) {
-    int index = getIndex(point);
-    if (index != -1 && haveNodes()) {
-      nodes.get(index).retrieve(returnObjects, point);
+    for (int i = 0; i < nodes.size; i++) {
+      OctreeNode node = nodes.get(i);
+      if (node.getBounds().contains(point)) {
+        node.retrieve(returnObjects, point);
+      }
     }
 
     for (int i = 0; i < objects.size; i++) {
@@ -355,22 +529,41 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
   }
 
 
-  public void retrieve(Array<E> returnObjects, OctreeQuery query) {
-    if (haveNodes()) {
-      for(OctreeNode node : nodes) {
-        if (query.checkNode(node)) {
-          node.retrieve(returnObjects, query);
-        }
+  @Override
+  public void retrieve(Array<E> returnObjects, OctreeQuery<E> query) {
+    for (int i = 0; i < nodes.size; i++) {
+      OctreeNode<E> node = nodes.get(i);
+      if (query.checkNode(node.getBounds())) {
+        node.retrieve(returnObjects, query);
       }
     }
 
-    for (E object : objects) {
+    for (int i = 0; i < objects.size; i++) {
+      E object = objects.get(i);
       if (query.checkObject(object)) {
         returnObjects.add(object);
       }
     }
   }
 
+  @Override
+  public boolean query(OctreeQuery<E> query, OctreeVisitor<E> visitor) {
+    for (int i = 0; i < nodes.size; i++) {
+      OctreeNode<E> node = nodes.get(i);
+      if (query.checkNode(node.getBounds()) && !node.query(query, visitor)) {
+        return false;
+      }
+    }
+
+    for (int i = 0; i < objects.size; i++) {
+      E object = objects.get(i);
+      if (query.checkObject(object) && !visitor.visit(object)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public Array<E> getObjects() {
     return objects;
   }
@@ -380,10 +573,8 @@ public class OctreeNode<E extends OctreeObject> implements Pool.Poolable, Dispos
    * @param returnObjects
    */
   public void retrieve(Array<E> returnObjects) {
-    if (haveNodes()) {
-      for(OctreeNode node : nodes) {
-        node.retrieve(returnObjects);
-      }
+    for (int i = 0; i < nodes.size; i++) {
+      nodes.get(i).retrieve(returnObjects);
     }
 
     returnObjects.addAll(this.objects);
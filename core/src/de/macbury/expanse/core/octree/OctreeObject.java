@@ -7,5 +7,13 @@ import com.badlogic.gdx.math.collision.BoundingBox;
  */
 public interface OctreeObject {
   public BoundingBox getBoundingBox(BoundingBox outBox);
-  public void setOctreeParent(OctreeNode parent);
+  public void setOctreeParent(Octree parent);
+  public Octree getOctreeParent();
+
+  /**
+   * Index that {@link Octree} implementation can use to remember where object is stored, like cell in {@link SpatialGrid}
+   * @param slot
+   */
+  public void setOctreeSlot(int slot);
+  public int getOctreeSlot();
 }
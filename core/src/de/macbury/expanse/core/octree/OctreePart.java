@@ -1,15 +1,39 @@
 package de.macbury.expanse.core.octree;
 
 /**
- * Created by macbury on 21.10.14.
+ * Octant of {@link OctreeNode}. Front is at min z, top is at max y, and left is at min x
  */
 public enum OctreePart {
-  FrontTopLeft(0), FrontTopRight(1), FrontBottomLeft(2), FrontBottomRight(3),
-  BackTopLeft(4), BackTopRight(5), BackBottomLeft(6), BackBottomRight(7);
+  FrontTopLeft(0, true, true, true), FrontTopRight(1, true, true, false), FrontBottomLeft(2, true, false, true), FrontBottomRight(3, true, false, false),
+  BackTopLeft(4, false, true, true), BackTopRight(5, false, true, false), BackBottomLeft(6, false, false, true), BackBottomRight(7, false, false, false);
+
+  /**
+   * Cached {@link #values()} in index order
+   */
+  public final static OctreePart[] PARTS = values();
 
   private final int index;
-  OctreePart(int ni) {
+  private final boolean front;
+  private final boolean top;
+  private final boolean left;
+
+  OctreePart(int ni, boolean front, boolean top, boolean left) {
     this.index = ni;
+    this.front = front;
+    this.top   = top;
+    this.left  = left;
+  }
+
+  public boolean isFront() {
+    return front;
+  }
+
+  public boolean isTop() {
+    return top;
+  }
+
+  public boolean isLeft() {
+    return left;
   }
 
   public int getIndex() {
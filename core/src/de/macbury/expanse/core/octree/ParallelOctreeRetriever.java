@@ -0,0 +1,163 @@
+package de.macbury.expanse.core.octree;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import de.macbury.expanse.core.octree.query.OctreeQuery;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs {@link OctreeQuery} on {@link LevelOctree} in fork join pool. Each top level octant of {@link OctreeNode} is traversed
+ * in separate task, and results are merged back in calling thread in octant order. Query must be thread safe, because
+ * {@link OctreeQuery#checkNode} and {@link OctreeQuery#checkObject} are called from worker threads. Octree must not be modified during retrieve
+ */
+public class ParallelOctreeRetriever<E extends OctreeObject> implements Disposable {
+  private ForkJoinPool pool;
+  private final Array<OctreeTask> tasks;
+  private final RootTask rootTask;
+  private int taskCount;
+
+  public ParallelOctreeRetriever() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public ParallelOctreeRetriever(int parallelism) {
+    this.pool      = new ForkJoinPool(parallelism);
+    this.tasks     = new Array<OctreeTask>();
+    this.rootTask  = new RootTask();
+    this.taskCount = 0;
+  }
+
+  /**
+   * Query static and dynamic octree for objects using worker threads
+   * @param octree
+   * @param query
+   * @param returnObjects
+   */
+  public void retrieve(LevelOctree<E> octree, OctreeQuery<E> query, Array<E> returnObjects) {
+    taskCount = 0;
+    schedule(octree.getStaticOctree(), query, returnObjects);
+    schedule(octree.getDynamicOctree(), query, returnObjects);
+    run(returnObjects);
+  }
+
+  /**
+   * Query single octree for objects using worker threads
+   * @param octree
+   * @param query
+   * @param returnObjects
+   */
+  public void retrieve(Octree<E> octree, OctreeQuery<E> query, Array<E> returnObjects) {
+    taskCount = 0;
+    schedule(octree, query, returnObjects);
+    run(returnObjects);
+  }
+
+  /**
+   * Run scheduled tasks and merge their results
+   * @param returnObjects
+   */
+  private void run(Array<E> returnObjects) {
+    if (taskCount > 0) {
+      rootTask.reinitialize();
+      pool.invoke(rootTask);
+      for (int i = 0; i < taskCount; i++) {
+        OctreeTask task = tasks.get(i);
+        returnObjects.addAll(task.found);
+        task.clear();
+      }
+    }
+  }
+
+  /**
+   * Objects from root node are checked in calling thread, and each visible sub node gets its own task. Other octrees are
+   * traversed in one task
+   */
+  @SuppressWarnings("unchecked")
+  private void schedule(Octree<E> octree, OctreeQuery<E> query, Array<E> returnObjects) {
+    if (octree instanceof OctreeNode && ((OctreeNode<E>)octree).haveNodes()) {
+      OctreeNode<E> root = (OctreeNode<E>)octree;
+      Array<E> objects   = root.getObjects();
+      for (int i = 0; i < objects.size; i++) {
+        if (query.checkObject(objects.get(i))) {
+          returnObjects.add(objects.get(i));
+        }
+      }
+
+      for (int i = 0; i < OctreePart.PARTS.length; i++) {
+        OctreeNode<E> node = root.getNode(OctreePart.PARTS[i]);
+        if (query.checkNode(node.getBounds())) {
+          nextTask().set(node, query);
+        }
+      }
+    } else {
+      nextTask().set(octree, query);
+    }
+  }
+
+  private OctreeTask nextTask() {
+    if (taskCount == tasks.size) {
+      tasks.add(new OctreeTask());
+    }
+    return tasks.get(taskCount++);
+  }
+
+  @Override
+  public void dispose() {
+    pool.shutdown();
+    pool = null;
+    tasks.clear();
+  }
+
+  /**
+   * Forks all octant tasks and waits for them
+   */
+  private class RootTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void compute() {
+      for (int i = 1; i < taskCount; i++) {
+        OctreeTask task = tasks.get(i);
+        task.reinitialize();
+        task.fork();
+      }
+
+      OctreeTask first = tasks.get(0);
+      first.reinitialize();
+      first.invoke();
+
+      for (int i = 1; i < taskCount; i++) {
+        tasks.get(i).join();
+      }
+    }
+  }
+
+  /**
+   * Traverse one octree or octant, and collects found objects in own array
+   */
+  private class OctreeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Array<E> found = new Array<E>(false, 64);
+    private Octree<E> octree;
+    private OctreeQuery<E> query;
+
+    public void set(Octree<E> octree, OctreeQuery<E> query) {
+      this.octree = octree;
+      this.query  = query;
+    }
+
+    public void clear() {
+      found.clear();
+      octree = null;
+      query  = null;
+    }
+
+    @Override
+    protected void compute() {
+      octree.retrieve(found, query);
+    }
+  }
+}
@@ -0,0 +1,369 @@
+package de.macbury.expanse.core.octree;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import de.macbury.expanse.core.octree.query.OctreeQuery;
+import de.macbury.expanse.core.octree.query.OctreeVisitor;
+
+/**
+ * Uniform grid on x and z axis for worlds where objects live on heightfield, and splitting y axis like {@link OctreeNode} only wastes levels.
+ * Each object is stored in one cell by center of its bounding box, and remembers that cell in {@link OctreeObject#getOctreeSlot()}.
+ * Every cell keeps bounds of objects inside it (with their height), so {@link OctreeQuery#checkNode(BoundingBox)} receives tight bounds.
+ * Cells are grouped in blocks, so empty or invisible parts of world are skipped fast. Bounds of changed cells are recalculated on next query
+ */
+public class SpatialGrid<E extends OctreeObject> implements Octree<E> {
+  public final static float DEFAULT_CELL_SIZE = 16f;
+  /**
+   * Number of cells in one block on each axis
+   */
+  private final static int BLOCK_SIZE = 8;
+
+  private final float cellSize;
+  private final BoundingBox bounds;
+  private final BoundingBox tempBox;
+  private final BoundingBox nodeBox;
+  private final Vector3 tempMin;
+  private final Vector3 tempMax;
+  private final IntArray dirtyCellList;
+  private final IntArray dirtyBlockList;
+
+  private int cellsX;
+  private int cellsZ;
+  private int blocksX;
+  private int blocksZ;
+  private Array<E>[] cells;
+  /**
+   * Six floats for each cell: min x, y, z and max x, y, z
+   */
+  private float[] cellBounds;
+  private float[] blockBounds;
+  private int[] blockCounts;
+  private boolean[] dirtyCells;
+  private boolean[] dirtyBlocks;
+  private int size;
+  private int generation;
+
+  public SpatialGrid() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * @param cellSize size of cell in world units on x and z axis
+   */
+  public SpatialGrid(float cellSize) {
+    this.cellSize       = cellSize;
+    this.bounds         = new BoundingBox();
+    this.tempBox        = new BoundingBox();
+    this.nodeBox        = new BoundingBox();
+    this.tempMin        = new Vector3();
+    this.tempMax        = new Vector3();
+    this.dirtyCellList  = new IntArray();
+    this.dirtyBlockList = new IntArray();
+    allocate(1, 1);
+  }
+
+  @Override
+  public void setBounds(BoundingBox box) {
+    clear();
+    bounds.set(box);
+    allocate(
+      Math.max(1, MathUtils.ceil(bounds.getWidth() / cellSize)),
+      Math.max(1, MathUtils.ceil(bounds.getDepth() / cellSize))
+    );
+  }
+
+  @SuppressWarnings("unchecked")
+  private void allocate(int cellsX, int cellsZ) {
+    this.cellsX      = cellsX;
+    this.cellsZ      = cellsZ;
+    this.blocksX     = (cellsX + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.blocksZ     = (cellsZ + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.cells       = new Array[cellsX * cellsZ];
+    this.cellBounds  = new float[cells.length * 6];
+    this.dirtyCells  = new boolean[cells.length];
+    this.blockBounds = new float[blocksX * blocksZ * 6];
+    this.blockCounts = new int[blocksX * blocksZ];
+    this.dirtyBlocks = new boolean[blockCounts.length];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = new Array<E>(false, 4);
+    }
+    dirtyCellList.clear();
+    dirtyBlockList.clear();
+  }
+
+  public BoundingBox getBounds() {
+    return bounds;
+  }
+
+  @Override
+  public void insert(E object) {
+    if (object.getOctreeParent() == this)
+      return;
+    add(object, cellOf(object));
+    size++;
+    generation++;
+  }
+
+  @Override
+  public boolean remove(E object) {
+    if (object.getOctreeParent() != this)
+      return false;
+    removeFromCell(object);
+    object.setOctreeParent(null);
+    object.setOctreeSlot(-1);
+    size--;
+    generation++;
+    return true;
+  }
+
+  @Override
+  public void relocate(E object) {
+    if (object.getOctreeParent() != this) {
+      insert(object);
+      return;
+    }
+
+    int cell = cellOf(object);
+    if (cell == object.getOctreeSlot()) {
+      markDirty(cell);
+    } else {
+      removeFromCell(object);
+      add(object, cell);
+    }
+    generation++;
+  }
+
+  private void add(E object, int cell) {
+    cells[cell].add(object);
+    blockCounts[blockOf(cell)]++;
+    object.setOctreeParent(this);
+    object.setOctreeSlot(cell);
+    markDirty(cell);
+  }
+
+  private void removeFromCell(E object) {
+    int cell = object.getOctreeSlot();
+    cells[cell].removeValue(object, true);
+    blockCounts[blockOf(cell)]--;
+    markDirty(cell);
+  }
+
+  /**
+   * Nothing to free here, cells are allocated once in {@link #setBounds(BoundingBox)}
+   * @return
+   */
+  @Override
+  public boolean collapse() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < cells.length; i++) {
+      Array<E> objects = cells[i];
+      for (int j = 0; j < objects.size; j++) {
+        objects.get(j).setOctreeParent(null);
+        objects.get(j).setOctreeSlot(-1);
+      }
+      objects.clear();
+      dirtyCells[i] = false;
+    }
+    for (int i = 0; i < blockCounts.length; i++) {
+      blockCounts[i] = 0;
+      dirtyBlocks[i] = false;
+    }
+    dirtyCellList.clear();
+    dirtyBlockList.clear();
+    size = 0;
+    generation++;
+  }
+
+  @Override
+  public void retrieve(Array<E> returnObjects, OctreeQuery<E> query) {
+    refreshBounds();
+    for (int block = 0; block < blockCounts.length; block++) {
+      if (blockCounts[block] == 0 || !query.checkNode(getBounds(blockBounds, block, nodeBox)))
+        continue;
+
+      int startX = (block % blocksX) * BLOCK_SIZE;
+      int startZ = (block / blocksX) * BLOCK_SIZE;
+      int endX   = Math.min(startX + BLOCK_SIZE, cellsX);
+      int endZ   = Math.min(startZ + BLOCK_SIZE, cellsZ);
+      for (int cz = startZ; cz < endZ; cz++) {
+        for (int cx = startX; cx < endX; cx++) {
+          int cell         = cz * cellsX + cx;
+          Array<E> objects = cells[cell];
+          if (objects.size == 0 || !query.checkNode(getBounds(cellBounds, cell, nodeBox)))
+            continue;
+
+          for (int i = 0; i < objects.size; i++) {
+            E object = objects.get(i);
+            if (query.checkObject(object)) {
+              returnObjects.add(object);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean query(OctreeQuery<E> query, OctreeVisitor<E> visitor) {
+    refreshBounds();
+    for (int block = 0; block < blockCounts.length; block++) {
+      if (blockCounts[block] == 0 || !query.checkNode(getBounds(blockBounds, block, nodeBox)))
+        continue;
+
+      int startX = (block % blocksX) * BLOCK_SIZE;
+      int startZ = (block / blocksX) * BLOCK_SIZE;
+      int endX   = Math.min(startX + BLOCK_SIZE, cellsX);
+      int endZ   = Math.min(startZ + BLOCK_SIZE, cellsZ);
+      for (int cz = startZ; cz < endZ; cz++) {
+        for (int cx = startX; cx < endX; cx++) {
+          int cell         = cz * cellsX + cx;
+          Array<E> objects = cells[cell];
+          if (objects.size == 0 || !query.checkNode(getBounds(cellBounds, cell, nodeBox)))
+            continue;
+
+          for (int i = 0; i < objects.size; i++) {
+            E object = objects.get(i);
+            if (query.checkObject(object) && !visitor.visit(object)) {
+              return false;
+            }
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void retrieve(Array<E> returnObjects) {
+    for (int i = 0; i < cells.length; i++) {
+      returnObjects.addAll(cells[i]);
+    }
+  }
+
+  @Override
+  public int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Number of objects in grid
+   * @return
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public float getCellSize() {
+    return cellSize;
+  }
+
+  private int cellOf(E object) {
+    object.getBoundingBox(tempBox);
+    int cx = MathUtils.clamp((int)((tempBox.getCenterX() - bounds.min.x) / cellSize), 0, cellsX - 1);
+    int cz = MathUtils.clamp((int)((tempBox.getCenterZ() - bounds.min.z) / cellSize), 0, cellsZ - 1);
+    return cz * cellsX + cx;
+  }
+
+  private int blockOf(int cell) {
+    return ((cell / cellsX) / BLOCK_SIZE) * blocksX + (cell % cellsX) / BLOCK_SIZE;
+  }
+
+  private void markDirty(int cell) {
+    if (!dirtyCells[cell]) {
+      dirtyCells[cell] = true;
+      dirtyCellList.add(cell);
+    }
+
+    int block = blockOf(cell);
+    if (!dirtyBlocks[block]) {
+      dirtyBlocks[block] = true;
+      dirtyBlockList.add(block);
+    }
+  }
+
+  /**
+   * Recalculate bounds of changed cells and their blocks
+   */
+  private void refreshBounds() {
+    for (int i = 0; i < dirtyCellList.size; i++) {
+      int cell         = dirtyCellList.get(i);
+      Array<E> objects = cells[cell];
+      resetBounds(cellBounds, cell);
+      for (int j = 0; j < objects.size; j++) {
+        objects.get(j).getBoundingBox(tempBox);
+        extendBounds(cellBounds, cell, tempBox.min.x, tempBox.min.y, tempBox.min.z, tempBox.max.x, tempBox.max.y, tempBox.max.z);
+      }
+      dirtyCells[cell] = false;
+    }
+    dirtyCellList.clear();
+
+    for (int i = 0; i < dirtyBlockList.size; i++) {
+      int block  = dirtyBlockList.get(i);
+      int startX = (block % blocksX) * BLOCK_SIZE;
+      int startZ = (block / blocksX) * BLOCK_SIZE;
+      int endX   = Math.min(startX + BLOCK_SIZE, cellsX);
+      int endZ   = Math.min(startZ + BLOCK_SIZE, cellsZ);
+      resetBounds(blockBounds, block);
+      for (int cz = startZ; cz < endZ; cz++) {
+        for (int cx = startX; cx < endX; cx++) {
+          int cell = cz * cellsX + cx;
+          if (cells[cell].size > 0) {
+            int offset = cell * 6;
+            extendBounds(blockBounds, block,
+              cellBounds[offset], cellBounds[offset + 1], cellBounds[offset + 2],
+              cellBounds[offset + 3], cellBounds[offset + 4], cellBounds[offset + 5]
+            );
+          }
+        }
+      }
+      dirtyBlocks[block] = false;
+    }
+    dirtyBlockList.clear();
+  }
+
+  private void resetBounds(float[] target, int index) {
+    int offset = index * 6;
+    target[offset]     = Float.MAX_VALUE;
+    target[offset + 1] = Float.MAX_VALUE;
+    target[offset + 2] = Float.MAX_VALUE;
+    target[offset + 3] = -Float.MAX_VALUE;
+    target[offset + 4] = -Float.MAX_VALUE;
+    target[offset + 5] = -Float.MAX_VALUE;
+  }
+
+  private void extendBounds(float[] target, int index, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+    int offset = index * 6;
+    target[offset]     = Math.min(target[offset], minX);
+    target[offset + 1] = Math.min(target[offset + 1], minY);
+    target[offset + 2] = Math.min(target[offset + 2], minZ);
+    target[offset + 3] = Math.max(target[offset + 3], maxX);
+    target[offset + 4] = Math.max(target[offset + 4], maxY);
+    target[offset + 5] = Math.max(target[offset + 5], maxZ);
+  }
+
+  private BoundingBox getBounds(float[] source, int index, BoundingBox out) {
+    int offset = index * 6;
+    return out.set(
+      tempMin.set(source[offset], source[offset + 1], source[offset + 2]),
+      tempMax.set(source[offset + 3], source[offset + 4], source[offset + 5])
+    );
+  }
+
+  @Override
+  public void dispose() {
+    clear();
+    cells       = null;
+    cellBounds  = null;
+    blockBounds = null;
+    blockCounts = null;
+    dirtyCells  = null;
+    dirtyBlocks = null;
+  }
+}
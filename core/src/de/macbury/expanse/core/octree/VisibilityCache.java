@@ -0,0 +1,68 @@
+package de.macbury.expanse.core.octree;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.Arrays;
+
+/**
+ * Keeps objects found by query in previous frame. Stored objects are valid as long as query key (for example camera view projection)
+ * and {@link Octree#getGeneration()} did not change
+ */
+public class VisibilityCache<E extends OctreeObject> implements Disposable {
+  private final Array<E> objects;
+  private final float[] key;
+  private Octree<E> octree;
+  private int generation;
+  private boolean valid;
+
+  public VisibilityCache() {
+    this.objects = new Array<E>(false, 256);
+    this.key     = new float[16];
+    this.valid   = false;
+  }
+
+  /**
+   * Check if objects stored for this octree and key can be reused
+   * @param octree
+   * @param queryKey
+   * @return
+   */
+  public boolean isValid(Octree<E> octree, Matrix4 queryKey) {
+    return valid && this.octree == octree && generation == octree.getGeneration() && Arrays.equals(key, queryKey.val);
+  }
+
+  /**
+   * Clears stored objects and remembers octree generation and key. Fill returned array with query results
+   * @param octree
+   * @param queryKey
+   * @return
+   */
+  public Array<E> begin(Octree<E> octree, Matrix4 queryKey) {
+    this.octree     = octree;
+    this.generation = octree.getGeneration();
+    System.arraycopy(queryKey.val, 0, key, 0, key.length);
+    objects.clear();
+    valid = true;
+    return objects;
+  }
+
+  public Array<E> getObjects() {
+    return objects;
+  }
+
+  /**
+   * Forces new query on next frame
+   */
+  public void invalidate() {
+    valid = false;
+  }
+
+  @Override
+  public void dispose() {
+    objects.clear();
+    octree = null;
+    valid  = false;
+  }
+}
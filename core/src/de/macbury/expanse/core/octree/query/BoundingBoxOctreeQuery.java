@@ -0,0 +1,30 @@
+package de.macbury.expanse.core.octree.query;
+
+import com.badlogic.gdx.math.collision.BoundingBox;
+import de.macbury.expanse.core.octree.OctreeObject;
+
+/**
+ * Finds objects which bounding box intersects with box
+ */
+public class BoundingBoxOctreeQuery implements OctreeQuery {
+  private final BoundingBox box = new BoundingBox();
+  private BoundingBox tempBox   = new BoundingBox();
+
+  @Override
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return nodeBounds.intersects(box);
+  }
+
+  @Override
+  public boolean checkObject(OctreeObject object) {
+    return object.getBoundingBox(tempBox).intersects(box);
+  }
+
+  public BoundingBox getBox() {
+    return box;
+  }
+
+  public void setBox(BoundingBox box) {
+    this.box.set(box);
+  }
+}
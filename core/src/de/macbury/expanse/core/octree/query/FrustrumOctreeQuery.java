@@ -4,7 +4,6 @@ import com.badlogic.gdx.math.Frustum;
 import com.badlogic.gdx.math.Plane;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
-import de.macbury.expanse.core.octree.OctreeNode;
 import de.macbury.expanse.core.octree.OctreeObject;
 
 /**
@@ -16,8 +15,8 @@ public class FrustrumOctreeQuery implements OctreeQuery {
   private Vector3 tmpV = new Vector3();
 
   @Override
-  public boolean checkNode(OctreeNode node) {
-    return frustum.boundsInFrustum(node.getBounds());
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return frustum.boundsInFrustum(nodeBounds);
   }
 
   @Override
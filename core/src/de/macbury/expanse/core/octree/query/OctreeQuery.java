@@ -1,12 +1,17 @@
 package de.macbury.expanse.core.octree.query;
 
-import de.macbury.expanse.core.octree.OctreeNode;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import de.macbury.expanse.core.octree.OctreeObject;
 
 /**
  * Created by macbury on 29.10.14.
  */
 public interface OctreeQuery<E extends OctreeObject> {
-  public abstract boolean checkNode(OctreeNode node);
+  /**
+   * Check if node with passed bounds should be visited
+   * @param nodeBounds
+   * @return
+   */
+  public abstract boolean checkNode(BoundingBox nodeBounds);
   public abstract boolean checkObject(E object);
 }
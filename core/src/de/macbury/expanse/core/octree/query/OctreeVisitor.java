@@ -0,0 +1,15 @@
+package de.macbury.expanse.core.octree.query;
+
+import de.macbury.expanse.core.octree.OctreeObject;
+
+/**
+ * Receives objects that passed {@link OctreeQuery} directly during octree traversal, so nothing is copied into temporary arrays
+ */
+public interface OctreeVisitor<E extends OctreeObject> {
+  /**
+   * Called for each object that passed {@link OctreeQuery#checkObject(OctreeObject)}
+   * @param object
+   * @return false to stop traversal
+   */
+  public boolean visit(E object);
+}
@@ -0,0 +1,31 @@
+package de.macbury.expanse.core.octree.query;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import de.macbury.expanse.core.octree.OctreeObject;
+
+/**
+ * Finds objects which bounding box contains point
+ */
+public class PointOctreeQuery implements OctreeQuery {
+  private final Vector3 point = new Vector3();
+  private BoundingBox tempBox = new BoundingBox();
+
+  @Override
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return nodeBounds.contains(point);
+  }
+
+  @Override
+  public boolean checkObject(OctreeObject object) {
+    return object.getBoundingBox(tempBox).contains(point);
+  }
+
+  public Vector3 getPoint() {
+    return point;
+  }
+
+  public void setPoint(Vector3 point) {
+    this.point.set(point);
+  }
+}
@@ -0,0 +1,33 @@
+package de.macbury.expanse.core.octree.query;
+
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.math.collision.Ray;
+import de.macbury.expanse.core.octree.OctreeObject;
+
+/**
+ * Finds objects which bounding box is hit by ray
+ */
+public class RayOctreeQuery implements OctreeQuery {
+  private final Ray ray = new Ray(new Vector3(), new Vector3());
+  private BoundingBox tempBox = new BoundingBox();
+
+  @Override
+  public boolean checkNode(BoundingBox nodeBounds) {
+    return Intersector.intersectRayBoundsFast(ray, nodeBounds);
+  }
+
+  @Override
+  public boolean checkObject(OctreeObject object) {
+    return Intersector.intersectRayBoundsFast(ray, object.getBoundingBox(tempBox));
+  }
+
+  public Ray getRay() {
+    return ray;
+  }
+
+  public void setRay(Ray ray) {
+    this.ray.set(ray);
+  }
+}
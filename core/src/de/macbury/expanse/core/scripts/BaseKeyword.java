@@ -5,9 +5,12 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.ObjectMap;
 import de.macbury.expanse.core.TelegramEvents;
+import de.macbury.expanse.core.entities.Components;
 import de.macbury.expanse.core.entities.Messages;
+import de.macbury.expanse.core.entities.components.RobotCPUComponent;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.NativeFunction;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.ScriptableObject;
 
 /**
@@ -34,8 +37,8 @@ public abstract class BaseKeyword implements Disposable {
   }
 
   /**
-   * Dispatch message in next frame alias to {@link Messages#dispatchInNextFrame(Entity, TelegramEvents, Object)} but with synchronization!!!!
-   * Without synchronization messages pool returns sometime null!
+   * Dispatch message in next frame alias to {@link Messages#dispatchInNextFrame(Entity, TelegramEvents, Object)}.
+   * Safe to call from script thread, telegram is pushed to lock free queue
    * @param event
    * @param payload
    */
@@ -43,12 +46,25 @@ public abstract class BaseKeyword implements Disposable {
     messages.dispatchInNextFrame(sender, event, payload);
   }
 
+  /**
+   * Push instruction to {@link RobotCPUComponent#getInstructions()} without locking or allocation.
+   * If queue is full or entity have no cpu, instruction is sent with {@link BaseKeyword#dispatchInNextFrame(Entity, TelegramEvents, Object)}
+   * @param instruction
+   * @param argument
+   */
+  protected void pushInstruction(TelegramEvents instruction, float argument) {
+    RobotCPUComponent robotCPUComponent = Components.RobotCPU.get(entity);
+    if (robotCPUComponent == null || !robotCPUComponent.getInstructions().push(instruction.ordinal(), argument)) {
+      dispatchInNextFrame(entity, instruction, argument);
+    }
+  }
+
   /**
    * Loads source from file or from cache
    * @param filename
    * @return
    */
-  private static String loadSource(String filename) {
+  private synchronized static String loadSource(String filename) {
     if (!sourceCache.containsKey(filename)) {
       sourceCache.put(filename, Gdx.files.internal("core/"+filename+".js").readString());
     }
@@ -57,7 +73,7 @@ public abstract class BaseKeyword implements Disposable {
   }
 
   /**
-   * Registers keyword under scope and return its body function
+   * Registers keyword under scope and return its body function. Function is compiled once and shared by all robots using {@link ScriptCache}
    * @param context
    * @param coreScope
    * @return
@@ -65,15 +81,8 @@ public abstract class BaseKeyword implements Disposable {
   public NativeFunction register(Context context, ScriptableObject coreScope) {
     coreScope.put(namespace, coreScope, this);
 
-    NativeFunction function     = (NativeFunction)context.compileFunction(
-      coreScope,
-      loadSource(fileName),
-      fileName,
-      0,
-      null
-    );
-
-    return function;
+    Script script = ScriptCache.getKeywordScript(context, loadSource(fileName), fileName);
+    return (NativeFunction)script.exec(context, coreScope);
   }
 
   /**
@@ -0,0 +1,97 @@
+package de.macbury.expanse.core.scripts;
+
+import com.badlogic.gdx.math.MathUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free single producer single consumer ring buffer of robot instructions. Script keywords push instructions from script worker
+ * and {@link de.macbury.expanse.core.entities.systems.RobotManagerSystem} drains them on game thread once per tick.
+ * Instructions are stored as primitive opcode and argument so nothing is allocated per instruction
+ */
+public class InstructionQueue {
+  public static final int DEFAULT_CAPACITY = 8;
+
+  /**
+   * Receives drained instructions
+   */
+  public interface Consumer {
+    /**
+     * @param opcode
+     * @param argument
+     * @return false if instruction cannot be handled now, it stays in queue until next drain
+     */
+    public boolean onInstruction(int opcode, float argument);
+  }
+
+  private final int[] opcodes;
+  private final float[] arguments;
+  private final int mask;
+  /**
+   * Index of next instruction to read, written only by consumer
+   */
+  private final AtomicInteger head = new AtomicInteger();
+  /**
+   * Index of next free slot, written only by producer
+   */
+  private final AtomicInteger tail = new AtomicInteger();
+
+  public InstructionQueue() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public InstructionQueue(int capacity) {
+    capacity        = MathUtils.nextPowerOfTwo(capacity);
+    this.opcodes    = new int[capacity];
+    this.arguments  = new float[capacity];
+    this.mask       = capacity - 1;
+  }
+
+  /**
+   * Add instruction. Called only by producer
+   * @param opcode
+   * @param argument
+   * @return false if queue is full
+   */
+  public boolean push(int opcode, float argument) {
+    int currentTail = tail.get();
+    if (currentTail - head.get() > mask)
+      return false;
+
+    opcodes[currentTail & mask]   = opcode;
+    arguments[currentTail & mask] = argument;
+    tail.lazySet(currentTail + 1);
+    return true;
+  }
+
+  /**
+   * Pass queued instructions to consumer in order, until it rejects one. Rejected instruction is not removed, so order of
+   * instructions is kept. Called only by consumer
+   * @param consumer
+   * @return number of drained instructions
+   */
+  public int drain(Consumer consumer) {
+    int startHead   = head.get();
+    int currentHead = startHead;
+    int currentTail = tail.get();
+
+    while (currentHead != currentTail) {
+      if (!consumer.onInstruction(opcodes[currentHead & mask], arguments[currentHead & mask]))
+        break;
+      currentHead++;
+    }
+    head.lazySet(currentHead);
+    return currentHead - startHead;
+  }
+
+  public boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  /**
+   * Removes all instructions. Called only by consumer
+   */
+  public void clear() {
+    head.set(tail.get());
+  }
+}
@@ -5,17 +5,31 @@ import com.badlogic.gdx.utils.GdxRuntimeException;
 import org.mozilla.javascript.*;
 
 /**
- * This class extends standard {@link Context} and adds script pause and stopping
+ * This class extends standard {@link Context} and adds script pause and stopping. It also counts instructions used by script
+ * in current tick, see {@link ScriptInstrumenter}
  * http://stackoverflow.com/questions/25837444/rhino-ability-to-pause-save-state-and-resume-javascript
  */
 public class RobotScriptContext extends Context {
   private static final String TAG = "RobotScriptContext";
+  /**
+   * How many instructions are executed between calls of {@link RobotScriptContext#observeInstructionCount(int)}
+   */
+  private static final int INSTRUCTION_OBSERVER_THRESHOLD = 100;
+  /**
+   * Script that used this many budgets in one tick is stopped. Optimized functions and callbacks of native functions cannot yield in
+   * safe point, so this is the only limit for them
+   */
+  private static final int INSTRUCTION_HARD_LIMIT_BUDGETS = 100;
 
-  private boolean abort;
+  private volatile boolean abort;
+  private int instructionBudget;
+  private int instructionsUsed;
+  private boolean safePointYield;
+  private boolean overHardLimit;
 
   protected RobotScriptContext(ContextFactory factory) {
     super(factory);
-    setInstructionObserverThreshold(1);
+    setInstructionObserverThreshold(INSTRUCTION_OBSERVER_THRESHOLD);
     setGenerateObserverCount(true);
     setOptimizationLevel(-1);
   }
@@ -28,25 +42,80 @@ public class RobotScriptContext extends Context {
   }
 
   /**
-   * here is performed script aborting and eventualy script speed thortling
+   * Sets how many instructions script can use and how many it already used in current tick
+   * @param budget zero for no limit
+   * @param used
+   */
+  public void startBudget(int budget, int used) {
+    this.instructionBudget = budget;
+    this.instructionsUsed  = used;
+    this.safePointYield    = false;
+    this.overHardLimit     = false;
+  }
+
+  public int getInstructionsUsed() {
+    return instructionsUsed;
+  }
+
+  public boolean isBudgetExhausted() {
+    return instructionBudget > 0 && instructionsUsed >= instructionBudget;
+  }
+
+  /**
+   * Returns true if script used so many instructions in current tick that it must be stopped, see {@link RobotScriptContext#INSTRUCTION_HARD_LIMIT_BUDGETS}
+   * @return
+   */
+  public boolean isOverHardLimit() {
+    return instructionBudget > 0 && instructionsUsed >= (long)instructionBudget * INSTRUCTION_HARD_LIMIT_BUDGETS;
+  }
+
+  /**
+   * Called by {@link ScriptInstrumenter.SafePointFunction} before it captures continuation
+   */
+  public void markSafePointYield() {
+    safePointYield = true;
+  }
+
+  /**
+   * Returns true if script was paused because it used its instruction budget, not by keyword
+   * @return
+   */
+  public boolean isSafePointYield() {
+    return safePointYield;
+  }
+
+  /**
+   * here is performed script aborting and instruction counting. Script shares worker thread from {@link ScriptScheduler} with other scripts so it must not sleep here
    * @param instructionCount
    */
   @Override
   protected void observeInstructionCount(int instructionCount) {
     super.observeInstructionCount(instructionCount);
+    instructionsUsed += instructionCount;
 
     if (abort) {
       throw new ManualScriptStopException();
-    } else {
-      try {
-        Thread.sleep(10);
-      } catch (InterruptedException e) {
-        abort = true;
-      }
+    }
+
+    if (overHardLimit || isOverHardLimit()) {
+      overHardLimit = true;
+      throw new InstructionLimitException(instructionsUsed);
     }
   }
 
   public class ManualScriptStopException extends RuntimeException {
 
   }
+
+  /**
+   * Thrown when script runs over hard instruction limit, even in compiled code. Thrown again on every observation, so script cannot catch it
+   * and continue
+   */
+  public static class InstructionLimitException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InstructionLimitException(int instructionsUsed) {
+      super("Script used " + instructionsUsed + " instructions in one tick without yielding");
+    }
+  }
 }
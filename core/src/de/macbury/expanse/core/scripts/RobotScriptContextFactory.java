@@ -18,7 +18,7 @@ public class RobotScriptContextFactory extends ContextFactory {
   }
 
   /**
-   * If script is required to stop, stop it, otherwise just sleep 10 miliseconds
+   * Instructions are counted and scripts are stopped in {@link RobotScriptContext#observeInstructionCount(int)}
    * @param cx
    * @param instructionCount
    */
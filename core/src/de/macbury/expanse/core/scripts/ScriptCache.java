@@ -0,0 +1,166 @@
+package de.macbury.expanse.core.scripts;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.OrderedMap;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Compiled scripts and standard objects shared by all robots. Scripts are cached by their source so robots running the same program
+ * compile it only once. Only {@link ScriptCache#MAX_PROGRAMS} recently used programs are kept, so edited scripts do not stay in memory.
+ * Each robot gets own scope created with {@link ScriptCache#createScope(Context)} that uses sealed shared scope as prototype
+ */
+public class ScriptCache {
+  private static final String TAG = "ScriptCache";
+  /**
+   * Optimization level for functions that never yield, see {@link ScriptOptimizer}
+   */
+  private static final int OPTIMIZED_LEVEL = 9;
+  /**
+   * Main script must be interpreted for continuations, even if compiled by context that is not {@link RobotScriptContext}
+   */
+  private static final int INTERPRETED_LEVEL = -1;
+  /**
+   * Programs used by running robots or blueprints stay alive after eviction, they are only compiled again for next robot
+   */
+  private static final int MAX_PROGRAMS = 64;
+  /**
+   * Least recently used program is first
+   */
+  private static final OrderedMap<String, ScriptProgram> scripts = new OrderedMap<String, ScriptProgram>();
+  private static final ObjectMap<String, Script> keywordScripts = new ObjectMap<String, Script>();
+  private static ScriptableObject sharedScope;
+  private static boolean optimizeFunctions = true;
+
+  /**
+   * Returns compiled robot program. Top level functions that never yield are compiled with {@link ScriptCache#OPTIMIZED_LEVEL},
+   * rest of source is instrumented with {@link ScriptInstrumenter} and interpreted
+   * @param context
+   * @param source
+   * @return
+   */
+  public static synchronized ScriptProgram getProgram(Context context, String source) {
+    ScriptProgram program = scripts.remove(source);
+    if (program == null) {
+      Array<ScriptOptimizer.Declaration> declarations = canOptimize() ? ScriptOptimizer.findOptimizableFunctions(source) : new Array<ScriptOptimizer.Declaration>();
+      Array<Script> functions                         = new Array<Script>();
+      int optimizationLevel                           = context.getOptimizationLevel();
+
+      context.setOptimizationLevel(OPTIMIZED_LEVEL);
+      Script script;
+      try {
+        for (int i = 0; i < declarations.size; i++) {
+          ScriptOptimizer.Declaration declaration = declarations.get(i);
+          String functionSource                   = source.substring(declaration.start, declaration.end);
+          try {
+            functions.add(context.compileString("(" + functionSource + "\n)", "<src>", declaration.line, null));
+          } catch (RuntimeException e) {
+            Gdx.app.debug(TAG, "Could not optimize " + declaration.name + ": " + e.toString());
+            declarations.removeIndex(i--);
+          }
+        }
+
+        String mainSource = ScriptOptimizer.removeDeclarations(source, declarations);
+        context.setOptimizationLevel(INTERPRETED_LEVEL);
+        script            = context.compileString(ScriptInstrumenter.instrument(mainSource), "<src>", 1, null);
+      } finally {
+        context.setOptimizationLevel(optimizationLevel);
+      }
+
+      String[] functionNames = new String[declarations.size];
+      for (int i = 0; i < declarations.size; i++) {
+        functionNames[i] = declarations.get(i).name;
+      }
+
+      program           = new ScriptProgram(script, functionNames, functions.<Script>toArray(Script.class));
+      if (scripts.size >= MAX_PROGRAMS)
+        scripts.remove(scripts.orderedKeys().first());
+    }
+    scripts.put(source, program);
+    return program;
+  }
+
+  /**
+   * Bytecode generation is not available on Android
+   * @return
+   */
+  private static boolean canOptimize() {
+    return optimizeFunctions && (Gdx.app == null || Gdx.app.getType() != Application.ApplicationType.Android);
+  }
+
+  public static boolean isOptimizeFunctions() {
+    return optimizeFunctions;
+  }
+
+  /**
+   * Enables compiling functions that never yield to bytecode. Already cached programs are not changed
+   * @param optimizeFunctions
+   */
+  public static synchronized void setOptimizeFunctions(boolean optimizeFunctions) {
+    ScriptCache.optimizeFunctions = optimizeFunctions;
+  }
+
+  /**
+   * Returns compiled keyword function. Executing it in scope returns function bound to that scope
+   * @param context
+   * @param source source with single function
+   * @param fileName
+   * @return
+   */
+  public static synchronized Script getKeywordScript(Context context, String source, String fileName) {
+    Script script = keywordScripts.get(source);
+    if (script == null) {
+      script = context.compileString("(" + source + "\n)", fileName, 0, null);
+      keywordScripts.put(source, script);
+    }
+    return script;
+  }
+
+  /**
+   * Returns sealed scope with standard objects and {@link ScriptInstrumenter.SafePointFunction}
+   * @param context
+   * @return
+   */
+  public static synchronized ScriptableObject getSharedScope(Context context) {
+    if (sharedScope == null) {
+      ScriptableObject scope = context.initStandardObjects(null, true);
+      scope.put(ScriptInstrumenter.SAFE_POINT_NAME, scope, new ScriptInstrumenter.SafePointFunction());
+      /**
+       * Force lazy loaded standard objects to initialize now, so they are not initialized from many workers at once
+       */
+      for (Object id : scope.getAllIds()) {
+        if (id instanceof String)
+          ScriptableObject.getProperty(scope, (String)id);
+      }
+      scope.sealObject();
+      sharedScope = scope;
+    }
+    return sharedScope;
+  }
+
+  /**
+   * Creates new scope for robot with shared scope as prototype
+   * @param context
+   * @return
+   */
+  public static ScriptableObject createScope(Context context) {
+    ScriptableObject shared = getSharedScope(context);
+    ScriptableObject scope  = (ScriptableObject)context.newObject(shared);
+    scope.setPrototype(shared);
+    scope.setParentScope(null);
+    return scope;
+  }
+
+  /**
+   * Removes all compiled scripts
+   */
+  public static synchronized void clear() {
+    scripts.clear();
+    keywordScripts.clear();
+  }
+}
@@ -0,0 +1,247 @@
+package de.macbury.expanse.core.scripts;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContinuationPending;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * Rhino cannot capture continuation inside {@link RobotScriptContext#observeInstructionCount(int)}, so script source is instrumented
+ * with call to {@link SafePointFunction} in each loop condition and at start of each function body. If robot used its instruction budget
+ * script yields there and is resumed in next tick by {@link ScriptScheduler}.
+ * Only text is inserted, no new lines, so line numbers in script exceptions stay the same
+ */
+public class ScriptInstrumenter {
+  public static final String SAFE_POINT_NAME = "__safePoint";
+  private static final String SAFE_POINT_CALL = SAFE_POINT_NAME + "()";
+
+  private enum Pending {
+    None, While, For, Function
+  }
+
+  /**
+   * Returns source with safe points inserted:
+   * <ul>
+   *   <li>while (cond) and do {} while (cond) becomes while (__safePoint(), cond)</li>
+   *   <li>for (init; cond; update) becomes for (init; __safePoint(), cond; update). for in loops are not touched</li>
+   *   <li>function body starts with __safePoint();</li>
+   * </ul>
+   * @param source
+   * @return
+   */
+  public static String instrument(String source) {
+    StringBuilder out     = new StringBuilder(source.length() + 64);
+    int length            = source.length();
+    int i                 = 0;
+    int depth             = 0;
+    boolean regexAllowed  = true;
+    Pending pending       = Pending.None;
+    /**
+     * Paren depth of for headers that did not reach first semicolon yet
+     */
+    int[] forDepths       = new int[16];
+    int forCount          = 0;
+
+    while (i < length) {
+      char c = source.charAt(i);
+
+      if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+        int end = source.indexOf('\n', i);
+        end     = end == -1 ? length : end;
+        out.append(source, i, end);
+        i       = end;
+      } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+        int end = source.indexOf("*/", i + 2);
+        end     = end == -1 ? length : end + 2;
+        out.append(source, i, end);
+        i       = end;
+      } else if (c == '"' || c == '\'') {
+        int end = skipQuoted(source, i);
+        out.append(source, i, end);
+        i            = end;
+        regexAllowed = false;
+      } else if (c == '/' && regexAllowed) {
+        int end = skipRegex(source, i);
+        out.append(source, i, end);
+        i            = end;
+        regexAllowed = false;
+      } else if (Character.isJavaIdentifierStart(c) || Character.isDigit(c)) {
+        int end = i + 1;
+        while (end < length && Character.isJavaIdentifierPart(source.charAt(end)))
+          end++;
+        String word = source.substring(i, end);
+        out.append(word);
+        i = end;
+
+        if (word.equals("while")) {
+          pending = Pending.While;
+        } else if (word.equals("for")) {
+          pending = Pending.For;
+        } else if (word.equals("function")) {
+          pending = Pending.Function;
+        } else if (pending != Pending.Function) {
+          pending = Pending.None;
+        }
+        regexAllowed = isKeywordBeforeExpression(word);
+      } else if (Character.isWhitespace(c)) {
+        out.append(c);
+        i++;
+      } else {
+        out.append(c);
+        i++;
+
+        if (c == '(') {
+          depth++;
+          if (pending == Pending.While) {
+            out.append(SAFE_POINT_CALL).append(", ");
+            pending = Pending.None;
+          } else if (pending == Pending.For) {
+            if (forCount == forDepths.length) {
+              int[] resized = new int[forDepths.length * 2];
+              System.arraycopy(forDepths, 0, resized, 0, forCount);
+              forDepths = resized;
+            }
+            forDepths[forCount++] = depth;
+            pending               = Pending.None;
+          }
+        } else if (c == ')') {
+          if (forCount > 0 && forDepths[forCount - 1] == depth) {
+            forCount--; // for in loop
+          }
+          depth--;
+        } else if (c == ';') {
+          if (forCount > 0 && forDepths[forCount - 1] == depth) {
+            forCount--;
+            int next = skipTrivia(source, i);
+            if (next < length && source.charAt(next) == ';') {
+              out.append(SAFE_POINT_CALL).append(", true");
+            } else {
+              out.append(SAFE_POINT_CALL).append(", ");
+            }
+          }
+        } else if (c == '{') {
+          if (pending == Pending.Function) {
+            out.append(SAFE_POINT_CALL).append(";");
+            pending = Pending.None;
+          }
+        }
+
+        if (pending != Pending.Function)
+          pending = Pending.None;
+        regexAllowed = c != ')' && c != ']';
+      }
+    }
+
+    return out.toString();
+  }
+
+  /**
+   * Keywords after which slash starts regex instead of division
+   * @param word
+   * @return
+   */
+  static boolean isKeywordBeforeExpression(String word) {
+    return word.equals("return") || word.equals("typeof") || word.equals("instanceof") || word.equals("in") ||
+           word.equals("new") || word.equals("delete") || word.equals("void") || word.equals("throw") ||
+           word.equals("case") || word.equals("do") || word.equals("else");
+  }
+
+  static int skipQuoted(String source, int start) {
+    char quote = source.charAt(start);
+    int i      = start + 1;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote || c == '\n') {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return source.length();
+  }
+
+  static int skipRegex(String source, int start) {
+    int i           = start + 1;
+    boolean inClass = false;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '\n') {
+        return i;
+      } else if (c == '/' && !inClass) {
+        i++;
+        while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i)))
+          i++;
+        return i;
+      }
+      i++;
+    }
+    return source.length();
+  }
+
+  /**
+   * Skip whitespace and comments
+   * @param source
+   * @param start
+   * @return index of next significant char
+   */
+  private static int skipTrivia(String source, int start) {
+    int i = start;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '/') {
+        int end = source.indexOf('\n', i);
+        i       = end == -1 ? source.length() : end;
+      } else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '*') {
+        int end = source.indexOf("*/", i + 2);
+        i       = end == -1 ? source.length() : end + 2;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Native function called in safe points. If {@link RobotScriptContext} used its instruction budget it captures continuation, so
+   * {@link ScriptRunner} can pause script until next tick.
+   * Continuation cannot be captured in function called from native code, like callbacks of forEach, map or sort. Then yield is
+   * deferred to next safe point outside of native call
+   */
+  public static class SafePointFunction extends BaseFunction {
+    private static final long serialVersionUID = 1L;
+    @Override
+    public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+      if (cx instanceof RobotScriptContext) {
+        RobotScriptContext context = (RobotScriptContext)cx;
+        if (context.isBudgetExhausted()) {
+          ContinuationPending pending;
+          try {
+            pending = context.captureContinuation();
+          } catch (IllegalStateException nativeCallback) {
+            return Undefined.instance;
+          }
+          context.markSafePointYield();
+          throw pending;
+        }
+      }
+      return Undefined.instance;
+    }
+
+    @Override
+    public String getFunctionName() {
+      return SAFE_POINT_NAME;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package de.macbury.expanse.core.scripts;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Execution statistics of single {@link ScriptRunner}. Values are written only by thread that runs script and can be read from any thread,
+ * so they can be shown in ui or used to find scripts that use too much cpu
+ */
+public class ScriptMetrics {
+  private volatile long instructions;
+  private volatile long runningNanos;
+  private volatile long pausedNanos;
+  private volatile long compileNanos;
+  private volatile int steps;
+  private volatile int yields;
+  private volatile int throttles;
+  private volatile int exceptions;
+  private volatile String lastException;
+  /**
+   * When script was paused, zero if it is not paused
+   */
+  private volatile long pausedAt;
+  private long stepStartedAt;
+
+  /**
+   * Called before script runs on worker
+   */
+  protected void beginStep() {
+    stepStartedAt = TimeUtils.nanoTime();
+    if (pausedAt != 0) {
+      pausedNanos += stepStartedAt - pausedAt;
+      pausedAt     = 0;
+    }
+  }
+
+  /**
+   * Called after script stopped running on worker
+   * @param instructionsUsed instructions executed in this step
+   * @param paused true if script now waits for keyword or next tick
+   */
+  protected void endStep(int instructionsUsed, boolean paused) {
+    long now      = TimeUtils.nanoTime();
+    runningNanos += now - stepStartedAt;
+    instructions += instructionsUsed;
+    steps++;
+    if (paused)
+      pausedAt = now;
+  }
+
+  protected void addCompileTime(long nanos) {
+    compileNanos += nanos;
+  }
+
+  /**
+   * Script yielded in keyword
+   */
+  protected void yielded() {
+    yields++;
+  }
+
+  /**
+   * Script used its instruction budget and was paused in safe point
+   */
+  protected void throttled() {
+    throttles++;
+  }
+
+  protected void exception(Exception e) {
+    exceptions++;
+    lastException = e.toString();
+  }
+
+  /**
+   * Total number of instructions executed by script
+   * @return
+   */
+  public long getInstructions() {
+    return instructions;
+  }
+
+  /**
+   * Total time script was running on worker
+   * @return
+   */
+  public long getRunningNanos() {
+    return runningNanos;
+  }
+
+  /**
+   * Total time script was paused, including current pause
+   * @return
+   */
+  public long getPausedNanos() {
+    long since = pausedAt;
+    return since == 0 ? pausedNanos : pausedNanos + TimeUtils.nanoTime() - since;
+  }
+
+  /**
+   * Time spent getting compiled script from {@link ScriptCache}, mostly first compilation of source
+   * @return
+   */
+  public long getCompileNanos() {
+    return compileNanos;
+  }
+
+  /**
+   * How many times script was run by {@link ScriptScheduler}
+   * @return
+   */
+  public int getSteps() {
+    return steps;
+  }
+
+  /**
+   * How many times script yielded in keyword
+   * @return
+   */
+  public int getYields() {
+    return yields;
+  }
+
+  /**
+   * How many times script used whole instruction budget of tick
+   * @return
+   */
+  public int getThrottles() {
+    return throttles;
+  }
+
+  public int getExceptions() {
+    return exceptions;
+  }
+
+  /**
+   * @return description of last exception or null
+   */
+  public String getLastException() {
+    return lastException;
+  }
+
+  /**
+   * Returns part of time that script was running instead of waiting
+   * @return value from 0 to 1
+   */
+  public float getRunningRatio() {
+    long running = runningNanos;
+    long total   = running + getPausedNanos();
+    return total == 0 ? 0 : (float)running / total;
+  }
+
+  @Override
+  public String toString() {
+    return "Instructions: " + instructions + "\n" +
+           "Running: " + TimeUtils.nanosToMillis(runningNanos) + " ms (" + Math.round(getRunningRatio() * 100) + "%)\n" +
+           "Paused: " + TimeUtils.nanosToMillis(getPausedNanos()) + " ms\n" +
+           "Compile: " + TimeUtils.nanosToMillis(compileNanos) + " ms\n" +
+           "Steps: " + steps + " Yields: " + yields + " Throttled: " + throttles + "\n" +
+           "Exceptions: " + exceptions + (lastException == null ? "" : " " + lastException);
+  }
+}
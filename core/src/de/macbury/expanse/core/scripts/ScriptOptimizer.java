@@ -0,0 +1,638 @@
+package de.macbury.expanse.core.scripts;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * Finds top level functions in robot script that can never reach yielding keyword. Continuations work only in interpreted mode,
+ * but such functions can be compiled to JVM bytecode with full optimization and called from interpreted script.
+ * Function is optimized only if it:
+ * <ul>
+ *   <li>calls by name only functions declared inside it, other optimized top level functions or standard global functions</li>
+ *   <li>calls methods only from list of standard Math, Array and String methods, callback methods only with inline function</li>
+ *   <li>calls methods only on receivers that are surely built in: Math, String, literals, local variables that are assigned only
+ *   literals and results of such calls. Object in script variable could have keyword under name of standard method</li>
+ *   <li>references only names declared in script or standard globals, so keywords cannot be passed anywhere</li>
+ *   <li>does not call result of expression, use eval, Function or with</li>
+ *   <li>is declared only once and its name is not assigned anywhere</li>
+ *   <li>has no recursion, directly or through other functions</li>
+ * </ul>
+ * Compiled code has no safe points, so function with long loop can use more than instruction budget of {@link ScriptScheduler}
+ * in one tick. Such script is stopped by hard limit of {@link RobotScriptContext}
+ * Analysis is done on tokens, not full syntax tree, so it rather skips function than optimize wrong one
+ */
+public class ScriptOptimizer {
+  private static final ObjectSet<String> RESERVED_WORDS = setOf(
+    "break", "case", "catch", "continue", "default", "delete", "do", "else", "finally", "for", "function", "if", "in",
+    "instanceof", "new", "return", "switch", "this", "throw", "try", "typeof", "var", "void", "while", "true", "false", "null"
+  );
+  private static final ObjectSet<String> FORBIDDEN_NAMES = setOf(
+    "eval", "Function", "with", "yield", ScriptInstrumenter.SAFE_POINT_NAME
+  );
+  private static final ObjectSet<String> GLOBAL_FUNCTIONS = setOf(
+    "parseInt", "parseFloat", "isNaN", "isFinite", "Number", "String", "Boolean", "Array", "Object", "Date", "RegExp", "Error"
+  );
+  private static final ObjectSet<String> GLOBAL_NAMES = setOf(
+    "Math", "Infinity", "NaN", "undefined", "arguments"
+  );
+  private static final ObjectSet<String> METHODS = setOf(
+    "abs", "acos", "asin", "atan", "atan2", "ceil", "cos", "exp", "floor", "log", "max", "min", "pow", "random", "round", "sin", "sqrt", "tan",
+    "push", "pop", "shift", "unshift", "splice", "slice", "concat", "join", "reverse", "indexOf", "lastIndexOf",
+    "charAt", "charCodeAt", "fromCharCode", "substring", "substr", "split", "toLowerCase", "toUpperCase", "match", "search",
+    "toFixed", "hasOwnProperty"
+  );
+  /**
+   * Methods that call passed function, allowed only with inline function or without arguments
+   */
+  private static final ObjectSet<String> CALLBACK_METHODS = setOf(
+    "sort", "forEach", "map", "filter", "every", "some", "reduce"
+  );
+  /**
+   * Methods that return stored element, their result can be any object
+   */
+  private static final ObjectSet<String> ELEMENT_METHODS = setOf(
+    "pop", "shift", "reduce"
+  );
+  /**
+   * Standard objects whose methods can be called, unless script declares or assigns same name
+   */
+  private static final ObjectSet<String> BUILT_IN_OBJECTS = setOf(
+    "Math", "String"
+  );
+  /**
+   * Tokens after which [ starts array literal instead of index
+   */
+  private static final ObjectSet<String> EXPRESSION_START = setOf(
+    "(", ",", "=", ":", "[", "{", "}", ";", "?", "&&", "||", "!", "return"
+  );
+  /**
+   * Tokens that can end assigned value
+   */
+  private static final ObjectSet<String> EXPRESSION_END = setOf(
+    ";", ",", ")", "}"
+  );
+
+  /**
+   * Top level function declaration that can be optimized
+   */
+  public static class Declaration {
+    public String name;
+    /**
+     * Index of first char of function keyword
+     */
+    public int start;
+    /**
+     * Index after closing brace of function body
+     */
+    public int end;
+    /**
+     * Line number of function keyword, starting from 1
+     */
+    public int line;
+    private int firstToken;
+    private int lastToken;
+    private boolean candidate;
+    private final ObjectSet<String> calls = new ObjectSet<String>();
+  }
+
+  private static class Token {
+    public final String text;
+    public final int start;
+    public final boolean identifier;
+
+    public Token(String text, int start, boolean identifier) {
+      this.text       = text;
+      this.start      = start;
+      this.identifier = identifier;
+    }
+
+    public boolean is(String value) {
+      return text.equals(value);
+    }
+  }
+
+  /**
+   * Returns top level functions from source that do not reach any yielding keyword, in order of declaration
+   * @param source
+   * @return
+   */
+  public static Array<Declaration> findOptimizableFunctions(String source) {
+    Array<Token> tokens                   = tokenize(source);
+    Array<Declaration> declarations       = new Array<Declaration>();
+    ObjectSet<String> declaredNames       = new ObjectSet<String>();
+    ObjectSet<String> topLevelVars        = new ObjectSet<String>();
+    ObjectSet<String> assignedNames       = new ObjectSet<String>();
+    collect(tokens, declarations, declaredNames, topLevelVars, assignedNames);
+
+    ObjectSet<String> topLevelFunctions = new ObjectSet<String>();
+    ObjectSet<String> duplicated        = new ObjectSet<String>();
+    for (Declaration declaration : declarations) {
+      if (!topLevelFunctions.add(declaration.name))
+        duplicated.add(declaration.name);
+    }
+
+    for (Declaration declaration : declarations) {
+      declaration.candidate = !duplicated.contains(declaration.name) &&
+                              !topLevelVars.contains(declaration.name) &&
+                              !assignedNames.contains(declaration.name) &&
+                              analyze(tokens, declaration, declaredNames, topLevelFunctions, topLevelVars, assignedNames);
+    }
+
+    for (Declaration declaration : declarations) {
+      if (declaration.candidate && reaches(declarations, declaration.name, declaration, new ObjectSet<String>()))
+        declaration.candidate = false;
+    }
+
+    /**
+     * Function is optimizable only if all top level functions it calls are optimizable too
+     */
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Declaration declaration : declarations) {
+        if (!declaration.candidate)
+          continue;
+        for (String call : declaration.calls) {
+          if (!isCandidate(declarations, call)) {
+            declaration.candidate = false;
+            changed               = true;
+            break;
+          }
+        }
+      }
+    }
+
+    Array<Declaration> result = new Array<Declaration>();
+    for (Declaration declaration : declarations) {
+      if (declaration.candidate) {
+        declaration.line = 1;
+        for (int i = 0; i < declaration.start; i++) {
+          if (source.charAt(i) == '\n')
+            declaration.line++;
+        }
+        result.add(declaration);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Replaces every char of declaration except new lines with space, so line numbers of rest of the script stay the same
+   * @param source
+   * @param declarations
+   * @return
+   */
+  public static String removeDeclarations(String source, Array<Declaration> declarations) {
+    StringBuilder out = new StringBuilder(source);
+    for (Declaration declaration : declarations) {
+      for (int i = declaration.start; i < declaration.end; i++) {
+        if (out.charAt(i) != '\n' && out.charAt(i) != '\r')
+          out.setCharAt(i, ' ');
+      }
+    }
+    return out.toString();
+  }
+
+  private static boolean isCandidate(Array<Declaration> declarations, String name) {
+    Declaration declaration = find(declarations, name);
+    return declaration != null && declaration.candidate;
+  }
+
+  private static Declaration find(Array<Declaration> declarations, String name) {
+    for (int i = 0; i < declarations.size; i++) {
+      if (declarations.get(i).name.equals(name))
+        return declarations.get(i);
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if function with given name can be called from declaration through calls of top level functions
+   */
+  private static boolean reaches(Array<Declaration> declarations, String name, Declaration from, ObjectSet<String> visited) {
+    if (!visited.add(from.name))
+      return false;
+    for (String call : from.calls) {
+      if (call.equals(name))
+        return true;
+      Declaration callee = find(declarations, call);
+      if (callee != null && reaches(declarations, name, callee, visited))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Finds top level function declarations and all names declared with var, function, parameters and catch
+   */
+  private static void collect(Array<Token> tokens, Array<Declaration> declarations, ObjectSet<String> declaredNames, ObjectSet<String> topLevelVars, ObjectSet<String> assignedNames) {
+    int braceDepth = 0;
+    int parenDepth = 0;
+    for (int i = 0; i < tokens.size; i++) {
+      Token token = tokens.get(i);
+
+      if (token.is("{")) {
+        braceDepth++;
+      } else if (token.is("}")) {
+        braceDepth--;
+      } else if (token.is("(")) {
+        parenDepth++;
+      } else if (token.is(")")) {
+        parenDepth--;
+      } else if (token.is("function")) {
+        Token name = next(tokens, i, 1);
+        if (name != null && name.identifier)
+          declaredNames.add(name.text);
+        collectParameters(tokens, i, declaredNames);
+
+        Token previous = next(tokens, i, -1);
+        boolean statementStart = previous == null || previous.is(";") || previous.is("}");
+        if (braceDepth == 0 && parenDepth == 0 && statementStart && name != null && name.identifier && !RESERVED_WORDS.contains(name.text)) {
+          Declaration declaration = declaration(tokens, i, name.text);
+          if (declaration != null)
+            declarations.add(declaration);
+        }
+      } else if (token.is("var")) {
+        collectVars(tokens, i, declaredNames, braceDepth == 0 ? topLevelVars : null);
+      } else if (token.is("catch")) {
+        Token name = next(tokens, i, 2);
+        if (name != null && name.identifier)
+          declaredNames.add(name.text);
+      } else if (token.identifier) {
+        Token following = next(tokens, i, 1);
+        Token previous  = next(tokens, i, -1);
+        if (following != null && isAssignment(following.text) && (previous == null || !previous.is(".")))
+          assignedNames.add(token.text);
+      }
+    }
+  }
+
+  private static boolean isAssignment(String operator) {
+    return operator.equals("=") || (operator.length() > 1 && operator.endsWith("=") && !operator.equals("==") &&
+           !operator.equals("===") && !operator.equals("!=") && !operator.equals("!==") && !operator.equals("<=") && !operator.equals(">="));
+  }
+
+  private static void collectParameters(Array<Token> tokens, int functionIndex, ObjectSet<String> declaredNames) {
+    int i = functionIndex + 1;
+    while (i < tokens.size && !tokens.get(i).is("(") && !tokens.get(i).is("{"))
+      i++;
+    if (i >= tokens.size || !tokens.get(i).is("("))
+      return;
+    for (i++; i < tokens.size && !tokens.get(i).is(")"); i++) {
+      if (tokens.get(i).identifier)
+        declaredNames.add(tokens.get(i).text);
+    }
+  }
+
+  /**
+   * Reads names declared in var statement. Initializers are skipped
+   */
+  private static void collectVars(Array<Token> tokens, int varIndex, ObjectSet<String> declaredNames, ObjectSet<String> topLevelVars) {
+    boolean expectName = true;
+    int depth          = 0;
+    for (int i = varIndex + 1; i < tokens.size; i++) {
+      Token token = tokens.get(i);
+      if (expectName) {
+        if (!token.identifier)
+          return;
+        declaredNames.add(token.text);
+        if (topLevelVars != null)
+          topLevelVars.add(token.text);
+        expectName = false;
+      } else if (token.is("(") || token.is("[") || token.is("{")) {
+        depth++;
+      } else if (token.is(")") || token.is("]") || token.is("}")) {
+        if (--depth < 0)
+          return;
+      } else if (depth == 0 && token.is(",")) {
+        expectName = true;
+      } else if ((depth == 0 && (token.is(";") || token.is("in"))) || token.is("var") || token.is("function")) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Finds params and body of function declaration
+   * @return null if declaration is not complete
+   */
+  private static Declaration declaration(Array<Token> tokens, int functionIndex, String name) {
+    int i = functionIndex + 2;
+    if (i >= tokens.size || !tokens.get(i).is("("))
+      return null;
+    while (i < tokens.size && !tokens.get(i).is(")"))
+      i++;
+    i++;
+    if (i >= tokens.size || !tokens.get(i).is("{"))
+      return null;
+
+    int depth = 0;
+    for (; i < tokens.size; i++) {
+      if (tokens.get(i).is("{")) {
+        depth++;
+      } else if (tokens.get(i).is("}") && --depth == 0) {
+        Declaration declaration = new Declaration();
+        declaration.name        = name;
+        declaration.firstToken  = functionIndex;
+        declaration.lastToken   = i;
+        declaration.start       = tokens.get(functionIndex).start;
+        declaration.end         = tokens.get(i).start + 1;
+        return declaration;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks all calls and references in function body
+   * @return true if function does not reach anything that could yield, not counting other top level functions
+   */
+  private static boolean analyze(Array<Token> tokens, Declaration declaration, ObjectSet<String> declaredNames, ObjectSet<String> topLevelFunctions,
+                                 ObjectSet<String> topLevelVars, ObjectSet<String> assignedNames) {
+    ObjectSet<String> localFunctions = new ObjectSet<String>();
+    /**
+     * Named functions inside declaration, including declaration itself, with names of local functions they call
+     */
+    Array<Declaration> locals        = new Array<Declaration>();
+    for (int i = declaration.firstToken; i <= declaration.lastToken; i++) {
+      Token name = next(tokens, i, 1);
+      if (tokens.get(i).is("function") && name != null && name.identifier) {
+        localFunctions.add(name.text);
+        Declaration local = declaration(tokens, i, name.text);
+        if (local != null)
+          locals.add(local);
+      }
+    }
+
+    ObjectSet<String> literalLocals = literalLocals(tokens, declaration, localFunctions, topLevelVars);
+
+    for (int i = declaration.firstToken; i <= declaration.lastToken; i++) {
+      Token token     = tokens.get(i);
+      Token previous  = next(tokens, i, -1);
+      Token following = next(tokens, i, 1);
+
+      if (token.is("(")) {
+        if (previous != null && (previous.is(")") || previous.is("]")))
+          return false;
+        continue;
+      }
+
+      if (!token.identifier || RESERVED_WORDS.contains(token.text))
+        continue;
+
+      if (FORBIDDEN_NAMES.contains(token.text))
+        return false;
+
+      boolean call = (following != null && following.is("(")) || (previous != null && previous.is("new"));
+      if (previous != null && previous.is(".")) {
+        if (call) {
+          if (!isBuiltInReceiver(tokens, i - 1, literalLocals, declaredNames, assignedNames))
+            return false;
+          if (CALLBACK_METHODS.contains(token.text)) {
+            Token argument = next(tokens, i, 2);
+            if (argument == null || !(argument.is(")") || argument.is("function")))
+              return false;
+          } else if (!METHODS.contains(token.text)) {
+            return false;
+          }
+        }
+      } else if (previous != null && previous.is("function")) {
+        continue;
+      } else if (following != null && following.is(":")) {
+        continue;
+      } else if (call) {
+        if (topLevelFunctions.contains(token.text) && !localFunctions.contains(token.text)) {
+          declaration.calls.add(token.text);
+        } else if (localFunctions.contains(token.text)) {
+          Declaration caller = enclosing(locals, i);
+          if (caller != null)
+            caller.calls.add(token.text);
+        } else if (!GLOBAL_FUNCTIONS.contains(token.text)) {
+          return false;
+        }
+      } else if (!declaredNames.contains(token.text) && !GLOBAL_NAMES.contains(token.text) && !GLOBAL_FUNCTIONS.contains(token.text)) {
+        return false;
+      }
+    }
+
+    for (Declaration local : locals) {
+      if (reaches(locals, local.name, local, new ObjectSet<String>()))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns variables declared with var inside declaration that are assigned only literal values anywhere in script, so their value
+   * is always standard array, string or number. Parameters, function names, catch names and names of top level variables are skipped
+   */
+  private static ObjectSet<String> literalLocals(Array<Token> tokens, Declaration declaration, ObjectSet<String> localFunctions, ObjectSet<String> topLevelVars) {
+    ObjectSet<String> locals  = new ObjectSet<String>();
+    ObjectSet<String> skipped = new ObjectSet<String>();
+    for (int i = declaration.firstToken; i <= declaration.lastToken; i++) {
+      Token token = tokens.get(i);
+      if (token.is("var")) {
+        collectVars(tokens, i, locals, null);
+      } else if (token.is("function")) {
+        collectParameters(tokens, i, skipped);
+      } else if (token.is("catch")) {
+        Token name = next(tokens, i, 2);
+        if (name != null && name.identifier)
+          skipped.add(name.text);
+      }
+    }
+
+    for (int i = 0; i < tokens.size; i++) {
+      Token token     = tokens.get(i);
+      Token previous  = next(tokens, i, -1);
+      Token following = next(tokens, i, 1);
+      if (token.identifier && following != null && following.is("=") && (previous == null || !previous.is(".")) && !isLiteralValue(tokens, i + 2))
+        skipped.add(token.text);
+    }
+
+    ObjectSet<String> result = new ObjectSet<String>();
+    for (String name : locals) {
+      if (!skipped.contains(name) && !localFunctions.contains(name) && !topLevelVars.contains(name))
+        result.add(name);
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if whole assigned value starting at token is single array, string or number literal
+   */
+  private static boolean isLiteralValue(Array<Token> tokens, int index) {
+    Token value = next(tokens, index, 0);
+    int end;
+    if (value == null) {
+      return false;
+    } else if (value.is("[")) {
+      end = matching(tokens, index, 1);
+    } else if (isLiteral(value)) {
+      end = index;
+    } else {
+      return false;
+    }
+    Token after = next(tokens, end, 1);
+    return end >= 0 && (after == null || EXPRESSION_END.contains(after.text));
+  }
+
+  private static boolean isLiteral(Token token) {
+    if (token.identifier || token.text.isEmpty())
+      return false;
+    char c = token.text.charAt(0);
+    return c == '"' || c == '\'' || Character.isDigit(c) || (c == '.' && token.text.length() > 1);
+  }
+
+  /**
+   * Checks receiver of method call, that ends before dot
+   * @param dotIndex index of dot before method name
+   * @return true if receiver is surely standard object, so method cannot be replaced by keyword
+   */
+  private static boolean isBuiltInReceiver(Array<Token> tokens, int dotIndex, ObjectSet<String> literalLocals, ObjectSet<String> declaredNames, ObjectSet<String> assignedNames) {
+    Token receiver = next(tokens, dotIndex, -1);
+    Token before   = next(tokens, dotIndex, -2);
+    if (receiver == null) {
+      return false;
+    } else if (receiver.identifier) {
+      if (before != null && before.is("."))
+        return false;
+      if (BUILT_IN_OBJECTS.contains(receiver.text))
+        return !declaredNames.contains(receiver.text) && !assignedNames.contains(receiver.text);
+      return literalLocals.contains(receiver.text);
+    } else if (isLiteral(receiver)) {
+      return true;
+    } else if (receiver.is("]")) {
+      int open = matching(tokens, dotIndex - 1, -1);
+      if (open < 0)
+        return false;
+      Token beforeOpen = next(tokens, open, -1);
+      return beforeOpen == null || EXPRESSION_START.contains(beforeOpen.text);
+    } else if (receiver.is(")")) {
+      /**
+       * Result of other method call on standard object
+       */
+      int open     = matching(tokens, dotIndex - 1, -1);
+      Token method = next(tokens, open, -1);
+      Token dot    = next(tokens, open, -2);
+      if (open < 0 || method == null || dot == null || !dot.is("."))
+        return false;
+      return (METHODS.contains(method.text) || CALLBACK_METHODS.contains(method.text)) && !ELEMENT_METHODS.contains(method.text) &&
+             isBuiltInReceiver(tokens, open - 2, literalLocals, declaredNames, assignedNames);
+    }
+    return false;
+  }
+
+  /**
+   * Finds matching bracket
+   * @param index index of opening or closing bracket
+   * @param direction 1 to search forward from opening bracket, -1 to search back from closing bracket
+   * @return index of matching bracket or -1
+   */
+  private static int matching(Array<Token> tokens, int index, int direction) {
+    int depth = 0;
+    for (int i = index; i >= 0 && i < tokens.size; i += direction) {
+      String text = tokens.get(i).text;
+      if (text.equals("(") || text.equals("[") || text.equals("{")) {
+        depth += direction;
+      } else if (text.equals(")") || text.equals("]") || text.equals("}")) {
+        depth -= direction;
+      }
+      if (depth == 0)
+        return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns innermost named function that contains token
+   */
+  private static Declaration enclosing(Array<Declaration> locals, int tokenIndex) {
+    Declaration result = null;
+    for (Declaration local : locals) {
+      if (local.firstToken < tokenIndex && tokenIndex <= local.lastToken && (result == null || local.firstToken > result.firstToken))
+        result = local;
+    }
+    return result;
+  }
+
+  private static Token next(Array<Token> tokens, int index, int offset) {
+    int i = index + offset;
+    return i >= 0 && i < tokens.size ? tokens.get(i) : null;
+  }
+
+  /**
+   * Splits source into identifiers, literals and punctuators. Comments and whitespace are skipped
+   */
+  private static Array<Token> tokenize(String source) {
+    Array<Token> tokens  = new Array<Token>();
+    int length           = source.length();
+    int i                = 0;
+    boolean regexAllowed = true;
+
+    while (i < length) {
+      char c = source.charAt(i);
+
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+        int end = source.indexOf('\n', i);
+        i       = end == -1 ? length : end;
+      } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+        int end = source.indexOf("*/", i + 2);
+        i       = end == -1 ? length : end + 2;
+      } else if (c == '"' || c == '\'') {
+        int end = ScriptInstrumenter.skipQuoted(source, i);
+        tokens.add(new Token(source.substring(i, end), i, false));
+        i            = end;
+        regexAllowed = false;
+      } else if (c == '/' && regexAllowed) {
+        int end = ScriptInstrumenter.skipRegex(source, i);
+        tokens.add(new Token(source.substring(i, end), i, false));
+        i            = end;
+        regexAllowed = false;
+      } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(source.charAt(i + 1)))) {
+        int end = i + 1;
+        while (end < length && (Character.isJavaIdentifierPart(source.charAt(end)) || source.charAt(end) == '.'))
+          end++;
+        tokens.add(new Token(source.substring(i, end), i, false));
+        i            = end;
+        regexAllowed = false;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int end = i + 1;
+        while (end < length && Character.isJavaIdentifierPart(source.charAt(end)))
+          end++;
+        String word = source.substring(i, end);
+        tokens.add(new Token(word, i, true));
+        i            = end;
+        regexAllowed = ScriptInstrumenter.isKeywordBeforeExpression(word);
+      } else {
+        int end = i + 1;
+        if (c == '<' || c == '>') {
+          while (end < length && source.charAt(end) == c)
+            end++;
+        } else if ((c == '+' || c == '-' || c == '&' || c == '|') && end < length && source.charAt(end) == c) {
+          end++;
+        }
+        if (end == i + 1 || c == '<' || c == '>') {
+          if ("=!<>+-*/%&|^".indexOf(c) != -1 && end < length && source.charAt(end) == '=') {
+            end++;
+            if ((c == '=' || c == '!') && end < length && source.charAt(end) == '=')
+              end++;
+          }
+        }
+        tokens.add(new Token(source.substring(i, end), i, false));
+        i            = end;
+        regexAllowed = c != ')' && c != ']';
+      }
+    }
+    return tokens;
+  }
+
+  private static ObjectSet<String> setOf(String... values) {
+    ObjectSet<String> set = new ObjectSet<String>();
+    for (String value : values)
+      set.add(value);
+    return set;
+  }
+}
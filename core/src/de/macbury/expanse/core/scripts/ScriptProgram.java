@@ -0,0 +1,65 @@
+package de.macbury.expanse.core.scripts;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Compiled robot program. Main script is interpreted so it can yield, top level functions found by {@link ScriptOptimizer}
+ * are compiled to bytecode and defined in robot scope before main script runs
+ */
+public class ScriptProgram {
+  private final Script script;
+  private final String[] functionNames;
+  private final Script[] functions;
+
+  public ScriptProgram(Script script, String[] functionNames, Script[] functions) {
+    this.script        = script;
+    this.functionNames = functionNames;
+    this.functions     = functions;
+  }
+
+  /**
+   * Returns interpreted main script
+   * @return
+   */
+  public Script getScript() {
+    return script;
+  }
+
+  public int getFunctionCount() {
+    return functions.length;
+  }
+
+  public String getFunctionName(int index) {
+    return functionNames[index];
+  }
+
+  /**
+   * Creates optimized function with scope as parent
+   * @param context
+   * @param index
+   * @param scope
+   * @return
+   */
+  public Function createFunction(Context context, int index, Scriptable scope) {
+    return (Function)functions[index].exec(context, scope);
+  }
+
+  /**
+   * Creates all optimized functions and puts them in scope, like declaration in script would do
+   * @param context
+   * @param scope
+   * @return created functions
+   */
+  public Function[] defineFunctions(Context context, ScriptableObject scope) {
+    Function[] result = new Function[functions.length];
+    for (int i = 0; i < functions.length; i++) {
+      result[i] = createFunction(context, i, scope);
+      scope.put(functionNames[i], scope, result[i]);
+    }
+    return result;
+  }
+}
@@ -3,11 +3,15 @@ package de.macbury.expanse.core.scripts;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
 import org.mozilla.javascript.*;
 
+import java.io.IOException;
+
 
 /**
- * This class runs script in thread
+ * This class runs script using {@link ScriptScheduler}. Each call to {@link ScriptRunner#step()} runs script until it yields, finish or throws exception.
+ * Script is scheduled again only after {@link ScriptRunner#resume(Object)} or, if it used its instruction budget, in next tick of {@link ScriptScheduler}
  */
 public class ScriptRunner implements Disposable {
   private enum State {
@@ -18,129 +22,283 @@ public class ScriptRunner implements Disposable {
   private String source;
   private RobotScriptContext context;
   private ScriptableObject mainScope;
-  private Script script;
-  private State state;
-  private Thread internalThread;
-  private ContinuationPending continuationPending;
+  private ScriptProgram program;
+  /**
+   * Functions from {@link ScriptProgram} compiled to bytecode and defined in mainScope
+   */
+  private Function[] optimizedFunctions;
+  private volatile State state;
+  private ScriptScheduler scheduler;
+  /**
+   * Continuation captured when script was paused, see {@link ContinuationPending#getContinuation()}
+   */
+  private Object continuation;
+  /**
+   * State restored from {@link ScriptRunner#saveState()} used on start instead of running script from beginning
+   */
+  private byte[] restoredState;
   private Object result; // passed to continuation pending
   private boolean loop = true;
   private Array<ScriptRunnerListener> listeners;
   private Object owner;
+  /**
+   * True while script is running on worker
+   */
+  private boolean executing;
+  /**
+   * Result for keyword was passed, but continuation was not resumed with it yet
+   */
+  private boolean resultReady;
+  /**
+   * Script was set to running while worker was still finishing, worker will schedule it again
+   */
+  private boolean scheduleOnExit;
+  /**
+   * Script is paused in safe point because it used instruction budget
+   */
+  private boolean throttled;
+  /**
+   * Pending continuation was captured in safe point, not by keyword
+   */
+  private boolean continuationAtSafePoint;
+  /**
+   * Tick of {@link ScriptScheduler} in which instructionsUsed was counted
+   */
+  private int budgetTick = -1;
+  private int instructionsUsed;
+  /**
+   * Used by {@link ScriptScheduler} to store its per script data
+   */
+  volatile Object schedulerHandle;
+  private final ScriptMetrics metrics = new ScriptMetrics();
+  private boolean disposed;
+  private boolean finishing;
+  private boolean finished;
 
   /**
    * Initialize new script runner
    */
-  public ScriptRunner(String source, Array<BaseKeyword> keywords, boolean loop) {
+  public ScriptRunner(String source, Array<BaseKeyword> keywords, boolean loop, ScriptScheduler scheduler) {
     this.source             = source;
     state                   = ScriptRunner.State.Pending;
     this.loop               = loop;
     this.keywords           = keywords;
+    this.scheduler          = scheduler;
     this.listeners          = new Array<ScriptRunnerListener>();
+  }
 
-    internalThread          = new Thread() {
-      @Override
-      public void run() {
-        ScriptRunner.this.run();
+  /**
+   * Runs script until it yields, finish or throws exception. Called by {@link ScriptScheduler}
+   */
+  protected void step() {
+    synchronized (this) {
+      if (state == State.Stopped || executing) {
+        return;
       }
-    };
-  }
+      executing = true;
+    }
+
+    boolean scheduleAgain                = false;
+    boolean throttledNow                 = false;
+    boolean pausedNow                    = false;
+    boolean finishNow                    = false;
+    ScriptScheduler nextScheduler        = null;
+    RobotScriptContext enteredContext    = (RobotScriptContext) Context.enter();
+    synchronized (this) {
+      this.context = enteredContext;
+      if (state == State.Stopped)
+        context.abort();
+    }
+
+    int tick = scheduler.getTick();
+    if (budgetTick != tick) {
+      budgetTick       = tick;
+      instructionsUsed = 0;
+    }
+    context.startBudget(scheduler.getInstructionBudget(), instructionsUsed);
+    int instructionsBefore = instructionsUsed;
+    metrics.beginStep();
 
-  private void run() {
     try {
-      configureContext();
-      compileScript();
+      if (state == State.Starting) {
+        long compileStartedAt = TimeUtils.nanoTime();
+        compileScript();
+        metrics.addCompileTime(TimeUtils.nanoTime() - compileStartedAt);
 
-      state = ScriptRunner.State.Running;
+        if (restoredState != null) {
+          restoreContext();
+        } else {
+          configureContext();
+        }
 
-      for (ScriptRunnerListener listener : listeners) {
-        listener.onScriptStart(ScriptRunner.this);
+        state = ScriptRunner.State.Running;
+
+        for (ScriptRunnerListener listener : listeners) {
+          listener.onScriptStart(ScriptRunner.this);
+        }
       }
 
-      /**
-       * Run forever while state is not {@link de.macbury.expanse.core.scripts.ScriptRunner.State#Stopped}
-       */
-      while(state != ScriptRunner.State.Stopped) {
-        try {
-          if (state == ScriptRunner.State.Running) {
-            /**
-             * If script is running and have pending continuation run it, otherwise run script from start
-             */
-            if (continuationPending != null) {
-
-              /**
-               * If result is exception throw it!
-               */
-              if (Exception.class.isInstance(result)) {
-
-                throw (Exception)result;
-              } else {
-                /**
-                 * Otherwise resume script from last state
-                 */
-                context.resumeContinuation(continuationPending.getContinuation(), mainScope, result);
-              }
-
-              result              = null;
-              continuationPending = null;
-            } else {
-              context.executeScriptWithContinuations(script, mainScope);
-            }
+      if (state == State.Running) {
+        /**
+         * If script have pending continuation run it, otherwise run script from start
+         */
+        if (continuation != null) {
+          Object continuationToResume         = continuation;
+          Object resultToPass                 = null;
+          continuation                        = null;
 
-            /**
-             * If nothing paused the script and is not set to loop we can now stop it
-             */
-            if (!loop)
-              state = ScriptRunner.State.Stopped;
+          if (continuationAtSafePoint) {
+            continuationAtSafePoint = false;
           } else {
-            Thread.sleep(10);
+            synchronized (this) {
+              resultToPass = result;
+              result       = null;
+              resultReady  = false;
+            }
           }
-        } catch (RobotScriptContext.ManualScriptStopException exception) {
           /**
-           * Set state to {@link de.macbury.expanse.core.scripts.ScriptRunner.State#Stopped} if user did manualy stop script
+           * If result is exception throw it!
            */
-          Gdx.app.debug(TAG, "Script stopped by user");
-          state = ScriptRunner.State.Stopped;
-          for (ScriptRunnerListener listener : listeners) {
-            listener.onScriptAbort(ScriptRunner.this);
+          if (Exception.class.isInstance(resultToPass)) {
+            throw (Exception)resultToPass;
+          } else {
+            /**
+             * Otherwise resume script from last state
+             */
+            context.resumeContinuation(continuationToResume, mainScope, resultToPass);
           }
-        } catch (ContinuationPending continuationPending) {
-          /**
-           * Set state to {@link de.macbury.expanse.core.scripts.ScriptRunner.State#Paused} and store continuationPending
-           */
-          state = ScriptRunner.State.Paused;
-          ScriptRunner.this.continuationPending = continuationPending;
-          for (ScriptRunnerListener listener : listeners) {
-            listener.onScriptPause(ScriptRunner.this, continuationPending);
+        } else {
+          optimizedFunctions = program.defineFunctions(context, mainScope);
+          context.executeScriptWithContinuations(program.getScript(), mainScope);
+        }
+
+        /**
+         * If nothing paused the script and is not set to loop we can now stop it, otherwise run it again from start
+         */
+        synchronized (this) {
+          if (!loop || state != State.Running) {
+            state = ScriptRunner.State.Stopped;
+          } else {
+            scheduleAgain = true;
           }
-        } catch (InterruptedException e) {
-          /**
-           * Set state to {@link de.macbury.expanse.core.scripts.ScriptRunner.State#Stopped} if antyhind did try to interput this thread
-           */
-          state = ScriptRunner.State.Stopped;
-        } catch (Exception e) {
-          state = ScriptRunner.State.Stopped;
-          for (ScriptRunnerListener listener : listeners) {
-            listener.onScriptException(ScriptRunner.this, e);
+        }
+      }
+    } catch (RobotScriptContext.ManualScriptStopException exception) {
+      /**
+       * Set state to {@link de.macbury.expanse.core.scripts.ScriptRunner.State#Stopped} if user did manualy stop script
+       */
+      Gdx.app.debug(TAG, "Script stopped by user");
+      state = ScriptRunner.State.Stopped;
+      for (ScriptRunnerListener listener : listeners) {
+        listener.onScriptAbort(ScriptRunner.this);
+      }
+    } catch (ContinuationPending continuationPending) {
+      /**
+       * Set state to {@link de.macbury.expanse.core.scripts.ScriptRunner.State#Paused} and store continuationPending.
+       * If script used its instruction budget it waits for next tick. If result was passed in meantime schedule script again
+       */
+      boolean atSafePoint = context.isSafePointYield();
+      boolean paused      = false;
+      if (atSafePoint) {
+        metrics.throttled();
+      } else {
+        metrics.yielded();
+      }
+      synchronized (this) {
+        this.continuation            = continuationPending.getContinuation();
+        this.continuationAtSafePoint = atSafePoint;
+        if (state == State.Running) {
+          if (atSafePoint) {
+            state        = ScriptRunner.State.Paused;
+            throttled    = true;
+            throttledNow = true;
+            pausedNow    = true;
+          } else if (resultReady) {
+            scheduleAgain = true;
+          } else {
+            state     = ScriptRunner.State.Paused;
+            paused    = true;
+            pausedNow = true;
           }
         }
       }
-    } finally {
-      if (listeners != null) {
+
+      if (paused) {
         for (ScriptRunnerListener listener : listeners) {
-          listener.onScriptFinish(ScriptRunner.this);
+          listener.onScriptPause(ScriptRunner.this, continuationPending);
         }
       }
-      internalThread      = null;
-      continuationPending = null;
-      result              = null;
-      owner               = null;
-      state               = ScriptRunner.State.Stopped;
-      Gdx.app.debug(TAG, "Exiting script");
+    } catch (Exception e) {
+      metrics.exception(e);
+      state = ScriptRunner.State.Stopped;
+      for (ScriptRunnerListener listener : listeners) {
+        listener.onScriptException(ScriptRunner.this, e);
+      }
+    } finally {
+      instructionsUsed = context.getInstructionsUsed();
       Context.exit();
+      metrics.endStep(instructionsUsed - instructionsBefore, pausedNow);
+
+      /**
+       * Decide what to do next while holding lock, after it is released script can be stopped and disposed by other thread
+       */
+      synchronized (this) {
+        this.context = null;
+        executing    = false;
+        if (scheduleOnExit) {
+          scheduleOnExit = false;
+          scheduleAgain  = state == State.Running;
+        }
+
+        if (state == State.Stopped) {
+          finishNow = true;
+        } else if (throttledNow || scheduleAgain) {
+          nextScheduler = scheduler;
+        }
+      }
+    }
 
+    if (finishNow) {
+      finish();
+    } else if (nextScheduler != null) {
+      if (throttledNow) {
+        nextScheduler.throttle(this);
+      } else {
+        nextScheduler.schedule(this);
+      }
     }
   }
 
+  /**
+   * Notify listeners that script finished and free resources. Runs only once
+   */
+  private void finish() {
+    ScriptScheduler currentScheduler;
+    synchronized (this) {
+      if (finishing || executing)
+        return;
+      finishing        = true;
+      currentScheduler = scheduler;
+    }
+
+    for (ScriptRunnerListener listener : listeners) {
+      listener.onScriptFinish(ScriptRunner.this);
+    }
+    continuation        = null;
+    result              = null;
+    if (currentScheduler != null)
+      currentScheduler.cancel(this);
+    Gdx.app.debug(TAG, "Exiting script");
+
+    boolean releaseNow;
+    synchronized (this) {
+      finished   = true;
+      releaseNow = disposed;
+    }
+    if (releaseNow)
+      release();
+  }
+
   /**
    * Adds listener
    * @param listener
@@ -170,25 +328,16 @@ public class ScriptRunner implements Disposable {
   }
 
   /**
-   * Start script execution in separate thread!
+   * Schedule script execution on {@link ScriptScheduler}
    */
   public boolean start() {
-    if (state == State.Pending) {
+    synchronized (this) {
+      if (state != State.Pending)
+        return false;
       state = State.Starting;
-      internalThread.start();
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  public void startAndWait() {
-    start();
-    try {
-      internalThread.join();
-    } catch (InterruptedException e) {
-      e.printStackTrace();
     }
+    scheduler.schedule(this);
+    return true;
   }
 
   /**
@@ -197,13 +346,46 @@ public class ScriptRunner implements Disposable {
    * @return true if script has been paused
    */
   public boolean resume(Object result) {
-    if (state == State.Paused) {
-      state = State.Running;
-      this.result = result;
-      return true;
-    } else {
-      return false;
+    synchronized (this) {
+      if (state == State.Paused && !throttled) {
+        state       = State.Running;
+        this.result = result;
+        resultReady = true;
+        if (executing) {
+          /**
+           * Worker is still finishing pausing, it will schedule script again
+           */
+          scheduleOnExit = true;
+          return true;
+        }
+      } else if (!resultReady && (throttled || state == State.Running)) {
+        /**
+         * Script did not yield for keyword yet, result will be used when it does
+         */
+        this.result = result;
+        resultReady = true;
+        return true;
+      } else {
+        return false;
+      }
+    }
+    scheduler.schedule(this);
+    return true;
+  }
+
+  /**
+   * Resume script paused in safe point. Called by {@link ScriptScheduler} in next tick
+   * @return true if script was waiting for next tick
+   */
+  protected boolean resumeThrottled() {
+    synchronized (this) {
+      if (state != State.Paused || !throttled)
+        return false;
+      throttled = false;
+      state     = State.Running;
     }
+    scheduler.schedule(this);
+    return true;
   }
 
   /**
@@ -211,61 +393,188 @@ public class ScriptRunner implements Disposable {
    * @return true if script is stopped!
    */
   public boolean stop() {
-    if (state == State.Running || State.Starting == state) {
-      state = State.Stopped;
-      loop  = false;
+    boolean wasExecuting;
+    synchronized (this) {
+      if (state == State.Stopped)
+        return false;
+      state        = State.Stopped;
+      loop         = false;
+      wasExecuting = executing;
       if (context != null)
         context.abort();
-      internalThread.interrupt();
+    }
+
+    if (!wasExecuting)
+      finish();
+    return true;
+  }
+
+  /**
+   * Get compiled program from {@link ScriptCache}
+   */
+  private void compileScript() {
+    if (program == null)
+      this.program = ScriptCache.getProgram(context, source);
+  }
+
+  /**
+   * Restores robot scope and continuation from state saved with {@link ScriptRunner#saveState()}. Keywords are not registered
+   * again, restored keyword functions use keywords of this runner
+   */
+  private void restoreContext() throws IOException {
+    Gdx.app.debug(TAG, "Restoring context");
+    ScriptStateSerializer.State restored = ScriptStateSerializer.read(restoredState, ScriptCache.getSharedScope(context), keywords, program);
+    this.mainScope                       = restored.scope;
+    this.continuation                    = restored.continuation;
+    this.continuationAtSafePoint         = restored.atSafePoint;
+    this.optimizedFunctions              = restored.functions;
+    this.restoredState                   = null;
+  }
+
+  /**
+   * Serialize paused script to compact binary form. It can be restored in other runner with {@link ScriptRunner#restoreState(byte[])}.
+   * Script paused by keyword is resumed with null after restore
+   * @return state or null if script is not paused
+   * @throws IOException
+   */
+  public byte[] saveState() throws IOException {
+    synchronized (this) {
+      if (state != State.Paused || executing || continuation == null)
+        return null;
+      executing = true;
+    }
+
+    Context context = Context.enter();
+    try {
+      return ScriptStateSerializer.write(ScriptCache.getSharedScope(context), keywords, optimizedFunctions, mainScope, continuation, continuationAtSafePoint);
+    } finally {
+      Context.exit();
+      synchronized (this) {
+        executing = false;
+      }
+    }
+  }
+
+  /**
+   * Use already compiled program, for example from blueprint, instead of getting it from {@link ScriptCache} on start.
+   * Must be called before {@link ScriptRunner#start()}
+   * @param program compiled source of this runner or null
+   * @return false if script was already started
+   */
+  public boolean setProgram(ScriptProgram program) {
+    synchronized (this) {
+      if (this.state != State.Pending)
+        return false;
+      this.program = program;
       return true;
-    } else if (state == State.Paused){
-      state = State.Stopped;
+    }
+  }
+
+  /**
+   * Start script from state saved with {@link ScriptRunner#saveState()} instead of beginning. Must be called before {@link ScriptRunner#start()}
+   * @param state
+   * @return false if script was already started
+   */
+  public boolean restoreState(byte[] state) {
+    synchronized (this) {
+      if (this.state != State.Pending)
+        return false;
+      this.restoredState = state;
       return true;
-    } else {
-      return false;
     }
   }
 
   /**
-   * Compile script
+   * Move paused script to other {@link ScriptScheduler} without restarting it
+   * @param target
+   * @return false if script is not paused
    */
-  private void compileScript() {
-    this.script  = context.compileString(source, "<src>", 1, null);
+  public boolean migrate(ScriptScheduler target) {
+    ScriptScheduler previous;
+    boolean wasThrottled;
+    synchronized (this) {
+      if (state != State.Paused || executing || target == scheduler)
+        return false;
+      previous        = scheduler;
+      wasThrottled    = throttled;
+      scheduler       = target;
+      previous.cancel(this);
+      schedulerHandle = null;
+    }
+
+    if (wasThrottled)
+      target.throttle(this);
+    return true;
   }
 
   /**
-   * Starts {@link RobotScriptContext} and configure main scope
+   * Creates robot scope on top of shared scope from {@link ScriptCache} and registers keywords
    */
   private void configureContext() {
     Gdx.app.debug(TAG, "Configuring context");
-    this.context   = (RobotScriptContext) Context.enter();
-    this.mainScope = context.initStandardObjects(null, true);
+    this.mainScope = ScriptCache.createScope(context);
 
     for (BaseKeyword keyword : keywords) {
-      ScriptableObject coreScope  = context.initStandardObjects();
+      ScriptableObject coreScope  = (ScriptableObject)context.newObject(mainScope);
       NativeFunction function     = keyword.register(context, coreScope);
       mainScope.put(function.getFunctionName(), mainScope, function);
     }
   }
 
+  /**
+   * Stops script. If script is currently running on worker, resources are freed after it stops
+   */
   @Override
   public void dispose() {
     stop();
 
-    for (BaseKeyword keyword : keywords) {
-      keyword.dispose();
+    synchronized (this) {
+      disposed = true;
+      if (!finished)
+        return;
     }
+    release();
+  }
+
+  private void release() {
+    synchronized (this) {
+      if (keywords == null)
+        return;
+      for (BaseKeyword keyword : keywords) {
+        keyword.dispose();
+      }
 
-    keywords.clear();
-    keywords = null;
-    source = null;
-    context = null;
-    mainScope = null;
-    internalThread = null;
-    continuationPending = null;
-    listeners.clear();
-    listeners = null;
-    owner = null;
+      keywords.clear();
+      keywords = null;
+      source = null;
+      context = null;
+      mainScope = null;
+      program = null;
+      optimizedFunctions = null;
+      scheduler = null;
+      schedulerHandle = null;
+      continuation = null;
+      restoredState = null;
+      listeners.clear();
+      listeners = null;
+      owner = null;
+    }
+  }
+
+  /**
+   * Returns true if script finished or was stopped
+   * @return
+   */
+  public boolean isStopped() {
+    return state == State.Stopped;
+  }
+
+  /**
+   * Returns execution statistics of this script
+   * @return
+   */
+  public ScriptMetrics getMetrics() {
+    return metrics;
   }
 
   public Object getOwner() {
@@ -0,0 +1,316 @@
+package de.macbury.expanse.core.scripts;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs all {@link ScriptRunner} on small fixed pool of worker threads instead of thread per script.
+ * Script is only scheduled when it starts or when {@link ScriptRunner#resume(Object)} is called, and it runs until it yields
+ * using {@link BaseKeyword#yield()}. Paused scripts do not use any thread.
+ * If created with zero workers scripts are run on thread that calls {@link ScriptScheduler#update()}.
+ * In {@link Mode#ThreadPerScript} each script gets own thread (virtual thread if JVM supports them) that is parked while script is paused.
+ * Each script can execute only instructionBudget instructions per tick, then it is paused in safe point (see {@link ScriptInstrumenter})
+ * and all paused scripts are resumed in order on next {@link ScriptScheduler#tick()}.
+ * In {@link Mode#Deterministic} scripts are run only inside simulation tick with fixed instruction budget, so same world always plays out the same
+ */
+public class ScriptScheduler implements Disposable {
+  public enum Mode {
+    /**
+     * Scripts are run on fixed pool of workers
+     */
+    Pooled,
+    /**
+     * Scripts are run in {@link ScriptScheduler#update()}
+     */
+    GameThread,
+    /**
+     * Each script have own thread, virtual if available. Pause and resume is handed off with park/unpark
+     */
+    ThreadPerScript,
+    /**
+     * Scripts are run in {@link ScriptScheduler#update()} like {@link Mode#GameThread}, but instruction budget cannot be disabled.
+     * Used with fixed timestep in {@link de.macbury.expanse.core.entities.EntityManager} for reproducible runs
+     */
+    Deterministic
+  }
+  private static final String TAG = "ScriptScheduler";
+  /**
+   * Stack size of platform thread used when virtual threads are not available
+   */
+  private static final long SCRIPT_THREAD_STACK_SIZE = 256 * 1024;
+  /**
+   * How many instructions each script can execute per tick
+   */
+  public static final int DEFAULT_INSTRUCTION_BUDGET = 5000;
+  private static Mode defaultMode = Mode.Pooled;
+  private ExecutorService workers;
+  private final ConcurrentLinkedQueue<ScriptRunner> pending;
+  /**
+   * Scripts that used their budget and wait for next tick
+   */
+  private final ConcurrentLinkedQueue<ScriptRunner> throttled = new ConcurrentLinkedQueue<ScriptRunner>();
+  private volatile int tick;
+  private volatile int instructionBudget = DEFAULT_INSTRUCTION_BUDGET;
+  private final Mode mode;
+  private final AtomicInteger scriptThreadCount = new AtomicInteger();
+
+  /**
+   * Creates scheduler with one worker per core leaving one core for game thread
+   */
+  public ScriptScheduler() {
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  /**
+   * @param workerCount number of worker threads, if zero scripts are run in {@link ScriptScheduler#update()}
+   */
+  public ScriptScheduler(int workerCount) {
+    this(workerCount > 0 ? Mode.Pooled : Mode.GameThread, workerCount);
+  }
+
+  private ScriptScheduler(Mode mode, int workerCount) {
+    this.mode    = mode;
+    this.pending = new ConcurrentLinkedQueue<ScriptRunner>();
+
+    if (workerCount > 0) {
+      this.workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "ScriptWorker-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  /**
+   * Creates scheduler that runs each script on its own thread
+   * @return
+   */
+  public static ScriptScheduler threadPerScript() {
+    return new ScriptScheduler(Mode.ThreadPerScript, 0);
+  }
+
+  /**
+   * Creates scheduler that runs scripts only in {@link ScriptScheduler#update()} with fixed instruction budget
+   * @return
+   */
+  public static ScriptScheduler deterministic() {
+    return new ScriptScheduler(Mode.Deterministic, 0);
+  }
+
+  /**
+   * Creates scheduler using {@link ScriptScheduler#getDefaultMode()}
+   * @return
+   */
+  public static ScriptScheduler create() {
+    switch (defaultMode) {
+      case ThreadPerScript:
+        return threadPerScript();
+      case Deterministic:
+        return deterministic();
+      case GameThread:
+        return new ScriptScheduler(0);
+      default:
+        return new ScriptScheduler();
+    }
+  }
+
+  public static Mode getDefaultMode() {
+    return defaultMode;
+  }
+
+  /**
+   * Sets mode used by {@link ScriptScheduler#create()}
+   * @param mode
+   */
+  public static void setDefaultMode(Mode mode) {
+    defaultMode = mode;
+  }
+
+  /**
+   * Queue script runner to run until next yield
+   * @param runner
+   */
+  public void schedule(final ScriptRunner runner) {
+    if (mode == Mode.ThreadPerScript) {
+      ScriptThread scriptThread = (ScriptThread)runner.schedulerHandle;
+      if (scriptThread == null) {
+        scriptThread            = new ScriptThread(runner);
+        runner.schedulerHandle  = scriptThread;
+        scriptThread.start();
+      } else {
+        scriptThread.wake();
+      }
+    } else if (workers == null) {
+      pending.add(runner);
+    } else {
+      try {
+        workers.execute(new Runnable() {
+          @Override
+          public void run() {
+            runner.step();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        runner.stop();
+      }
+    }
+  }
+
+  /**
+   * Called when script finished. Lets its thread exit in {@link Mode#ThreadPerScript}
+   * @param runner
+   */
+  public void cancel(ScriptRunner runner) {
+    if (runner.schedulerHandle != null) {
+      ((ScriptThread)runner.schedulerHandle).wake();
+    }
+  }
+
+  /**
+   * Script used its instruction budget, resume it in next tick
+   * @param runner
+   */
+  public void throttle(ScriptRunner runner) {
+    throttled.add(runner);
+  }
+
+  /**
+   * Starts new tick. Every script gets new instruction budget and scripts that were paused in safe point are resumed
+   * in order they were paused. Scripts throttled during this call wait for next tick
+   */
+  public void tick() {
+    tick++;
+    int count = throttled.size();
+    for (int i = 0; i < count; i++) {
+      ScriptRunner runner = throttled.poll();
+      if (runner == null)
+        break;
+      runner.resumeThrottled();
+    }
+  }
+
+  /**
+   * Starts new tick and runs all queued scripts on current thread if scheduler have no workers
+   */
+  public void update() {
+    tick();
+    ScriptRunner runner = null;
+    while ((runner = pending.poll()) != null) {
+      runner.step();
+    }
+  }
+
+  /**
+   * Returns true if scripts are run on worker threads
+   * @return
+   */
+  public boolean hasWorkers() {
+    return workers != null;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public int getTick() {
+    return tick;
+  }
+
+  public int getInstructionBudget() {
+    return instructionBudget;
+  }
+
+  /**
+   * Returns true if scripts run only in simulation tick, see {@link Mode#Deterministic}
+   * @return
+   */
+  public boolean isDeterministic() {
+    return mode == Mode.Deterministic;
+  }
+
+  /**
+   * Sets how many instructions each script can execute per tick
+   * @param instructionBudget zero for no limit, not allowed in {@link Mode#Deterministic}
+   */
+  public void setInstructionBudget(int instructionBudget) {
+    if (instructionBudget <= 0 && isDeterministic())
+      throw new GdxRuntimeException("Deterministic scheduler needs instruction budget");
+    this.instructionBudget = instructionBudget;
+  }
+
+  /**
+   * Creates virtual thread using reflection so it works on older JVMs and Android. If not available creates daemon thread with small stack
+   * @param runnable
+   * @param name
+   * @return
+   */
+  private static Thread newScriptThread(Runnable runnable, String name) {
+    try {
+      Class<?> builderKlass = Class.forName("java.lang.Thread$Builder");
+      Object builder        = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder               = builderKlass.getMethod("name", String.class).invoke(builder, name);
+      return (Thread)builderKlass.getMethod("unstarted", Runnable.class).invoke(builder, runnable);
+    } catch (Exception e) {
+      Thread thread = new Thread(null, runnable, name, SCRIPT_THREAD_STACK_SIZE);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * Thread that runs single script. Parks while script is paused and is unparked by {@link ScriptScheduler#schedule(ScriptRunner)}
+   */
+  private class ScriptThread implements Runnable {
+    private final ScriptRunner runner;
+    private final Thread thread;
+    private volatile boolean scheduled = true;
+
+    public ScriptThread(ScriptRunner runner) {
+      this.runner = runner;
+      this.thread = newScriptThread(this, "Script-" + scriptThreadCount.incrementAndGet());
+    }
+
+    public void start() {
+      thread.start();
+    }
+
+    public void wake() {
+      scheduled = true;
+      LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+      while (!runner.isStopped() && runner.schedulerHandle == this) {
+        if (scheduled) {
+          scheduled = false;
+          runner.step();
+        } else {
+          LockSupport.park(this);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void dispose() {
+    if (workers != null)
+      workers.shutdownNow();
+    workers = null;
+    pending.clear();
+    throttled.clear();
+  }
+}
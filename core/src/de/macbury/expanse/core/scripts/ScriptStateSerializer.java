@@ -0,0 +1,185 @@
+package de.macbury.expanse.core.scripts;
+
+import com.badlogic.gdx.utils.Array;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.serialize.ScriptableInputStream;
+import org.mozilla.javascript.serialize.ScriptableOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Writes paused script scope and continuation to compressed bytes and reads them back. Shared scope from {@link ScriptCache}
+ * and its standard objects are not written, only references to them. {@link BaseKeyword} objects are written as index in keywords array,
+ * so restored script uses keywords of new robot. Functions optimized by {@link ScriptOptimizer} are written as index and created again on read
+ */
+public class ScriptStateSerializer {
+  /**
+   * Restored script state
+   */
+  public static class State {
+    public ScriptableObject scope;
+    public Object continuation;
+    public boolean atSafePoint;
+    /**
+     * Optimized functions created while reading, null for functions not referenced by state
+     */
+    public Function[] functions;
+  }
+
+  /**
+   * Serialize script state
+   * @param sharedScope scope from {@link ScriptCache#getSharedScope(org.mozilla.javascript.Context)}
+   * @param keywords
+   * @param functions optimized functions defined in scope with {@link ScriptProgram#defineFunctions(Context, ScriptableObject)}
+   * @param scope robot scope
+   * @param continuation
+   * @param atSafePoint
+   * @return
+   * @throws IOException
+   */
+  public static byte[] write(ScriptableObject sharedScope, Array<BaseKeyword> keywords, Function[] functions, ScriptableObject scope, Object continuation, boolean atSafePoint) throws IOException {
+    ByteArrayOutputStream bytes       = new ByteArrayOutputStream();
+    DeflaterOutputStream deflater     = new DeflaterOutputStream(bytes);
+    StateOutputStream out             = new StateOutputStream(deflater, sharedScope, keywords, functions);
+    out.writeObject(scope);
+    out.writeObject(continuation);
+    out.writeBoolean(atSafePoint);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserialize script state. Requires entered {@link org.mozilla.javascript.Context}
+   * @param data
+   * @param sharedScope
+   * @param keywords keywords of robot that will run restored script
+   * @param program program of restored script, used to create optimized functions
+   * @return
+   * @throws IOException
+   */
+  public static State read(byte[] data, ScriptableObject sharedScope, Array<BaseKeyword> keywords, ScriptProgram program) throws IOException {
+    StateInputStream in = new StateInputStream(new InflaterInputStream(new ByteArrayInputStream(data)), sharedScope, keywords, program);
+    try {
+      State state         = new State();
+      state.scope         = (ScriptableObject)in.readObject();
+      state.continuation  = in.readObject();
+      state.atSafePoint   = in.readBoolean();
+      state.functions     = in.functions;
+      /**
+       * Functions were created before robot scope was read
+       */
+      for (Function function : state.functions) {
+        if (function != null)
+          function.setParentScope(state.scope);
+      }
+      return state;
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e.toString());
+    } finally {
+      in.close();
+    }
+  }
+
+  private static class SharedScopeRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static class SafePointRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static class KeywordRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int index;
+
+    public KeywordRef(int index) {
+      this.index = index;
+    }
+  }
+
+  private static class FunctionRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int index;
+
+    public FunctionRef(int index) {
+      this.index = index;
+    }
+  }
+
+  private static class StateOutputStream extends ScriptableOutputStream {
+    private final Scriptable sharedScope;
+    private final Array<BaseKeyword> keywords;
+    private final Function[] functions;
+
+    public StateOutputStream(OutputStream out, Scriptable sharedScope, Array<BaseKeyword> keywords, Function[] functions) throws IOException {
+      super(out, sharedScope);
+      this.sharedScope = sharedScope;
+      this.keywords    = keywords;
+      this.functions   = functions;
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+      if (obj == sharedScope) {
+        return new SharedScopeRef();
+      } else if (obj instanceof ScriptInstrumenter.SafePointFunction) {
+        return new SafePointRef();
+      } else if (obj instanceof BaseKeyword) {
+        int index = keywords.indexOf((BaseKeyword)obj, true);
+        if (index == -1)
+          throw new IOException("Keyword is not used by this script: " + obj);
+        return new KeywordRef(index);
+      } else if (obj instanceof Function && functions != null) {
+        for (int i = 0; i < functions.length; i++) {
+          if (functions[i] == obj)
+            return new FunctionRef(i);
+        }
+      }
+      return super.replaceObject(obj);
+    }
+  }
+
+  private static class StateInputStream extends ScriptableInputStream {
+    private final ScriptableObject sharedScope;
+    private final Array<BaseKeyword> keywords;
+    private final ScriptProgram program;
+    private final Function[] functions;
+
+    public StateInputStream(InputStream in, ScriptableObject sharedScope, Array<BaseKeyword> keywords, ScriptProgram program) throws IOException {
+      super(in, sharedScope);
+      this.sharedScope = sharedScope;
+      this.keywords    = keywords;
+      this.program     = program;
+      this.functions   = new Function[program.getFunctionCount()];
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof SharedScopeRef) {
+        return sharedScope;
+      } else if (obj instanceof SafePointRef) {
+        return sharedScope.get(ScriptInstrumenter.SAFE_POINT_NAME, sharedScope);
+      } else if (obj instanceof KeywordRef) {
+        return keywords.get(((KeywordRef)obj).index);
+      } else if (obj instanceof FunctionRef) {
+        int index = ((FunctionRef)obj).index;
+        if (index >= functions.length)
+          throw new IOException("Saved state does not match script");
+        if (functions[index] == null)
+          functions[index] = program.createFunction(Context.getCurrentContext(), index, sharedScope);
+        return functions[index];
+      }
+      return super.resolveObject(obj);
+    }
+  }
+}
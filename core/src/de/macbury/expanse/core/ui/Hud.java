@@ -34,6 +34,7 @@ import static com.badlogic.gdx.math.Interpolation.*;
 public class Hud extends Stage implements Telegraph {
   private static final String SKIN_FILE = "ui/ui.json";
   private final AnimatedImage loader;
+  private final ScriptMetricsLabel scriptMetricsLabel;
   private FullScreenFrameBufferResult fullScreenFrameBufferResult;
   private Overlay overlay;
   private Skin skin;
@@ -65,6 +66,16 @@ public class Hud extends Stage implements Telegraph {
     debugLabel.setPosition(20, Gdx.graphics.getHeight() - 80);
     addActor(debugLabel);
 
+    this.scriptMetricsLabel = new ScriptMetricsLabel(messages, skin);
+    scriptMetricsLabel.setAlignment(Align.left);
+    scriptMetricsLabel.setPosition(20, 120);
+    addActor(scriptMetricsLabel);
+
+    TelegramMetricsLabel telegramMetricsLabel = new TelegramMetricsLabel(messages.getMetrics(), skin);
+    telegramMetricsLabel.setAlignment(Align.topLeft);
+    telegramMetricsLabel.setPosition(Gdx.graphics.getWidth() - 420, Gdx.graphics.getHeight() - 80);
+    addActor(telegramMetricsLabel);
+
     this.loader = new AnimatedImage(new Animation(0.05f, skin.getAtlas().findRegions("loader")));
     loader.setPosition( Gdx.graphics.getWidth() - 84, 20);
     addActor(loader);
@@ -78,6 +89,7 @@ public class Hud extends Stage implements Telegraph {
 
   @Override
   public void dispose() {
+    scriptMetricsLabel.dispose();
     super.dispose();
 
     assets.unload(SKIN_FILE);
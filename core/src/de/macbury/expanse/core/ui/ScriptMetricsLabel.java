@@ -0,0 +1,72 @@
+package de.macbury.expanse.core.ui;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Disposable;
+import de.macbury.expanse.core.TelegramEvents;
+import de.macbury.expanse.core.entities.Components;
+import de.macbury.expanse.core.entities.Messages;
+import de.macbury.expanse.core.entities.components.PositionComponent;
+import de.macbury.expanse.core.entities.components.RobotCPUComponent;
+import de.macbury.expanse.core.scripts.ScriptMetrics;
+
+/**
+ * Display {@link ScriptMetrics} of robot selected with {@link SelectedUnitCursor}. Refreshed every second
+ */
+public class ScriptMetricsLabel extends Label implements Telegraph, Disposable {
+  private Messages messages;
+  private Entity target;
+  private float time;
+
+  public ScriptMetricsLabel(Messages messages, Skin skin) {
+    super("", skin, "fpsLabel");
+    this.messages = messages;
+
+    messages.addListener(this, TelegramEvents.SelectedEntity);
+    messages.addListener(this, TelegramEvents.DeselectedEntity);
+    setVisible(false);
+    setTouchable(Touchable.disabled);
+  }
+
+  @Override
+  public void act(float delta) {
+    super.act(delta);
+    time += delta;
+
+    if (time >= 1.0f && target != null) {
+      time = 0.0f;
+      RobotCPUComponent robotCPUComponent = Components.RobotCPU.get(target);
+      ScriptMetrics metrics               = robotCPUComponent == null ? null : robotCPUComponent.getScriptMetrics();
+      setText(metrics == null ? "No script" : metrics.toString());
+    }
+  }
+
+  @Override
+  public boolean handleMessage(Telegram msg) {
+    switch (TelegramEvents.from(msg)) {
+      case SelectedEntity:
+        target = ((PositionComponent)msg.sender).entity;
+        time   = 1.0f;
+        setVisible(Components.RobotCPU.has(target));
+        return true;
+      case DeselectedEntity:
+        target = null;
+        setVisible(false);
+        return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void dispose() {
+    remove();
+    messages.removeListener(this, TelegramEvents.SelectedEntity);
+    messages.removeListener(this, TelegramEvents.DeselectedEntity);
+    messages = null;
+    target   = null;
+  }
+}
@@ -0,0 +1,53 @@
+package de.macbury.expanse.core.ui;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.TimeUtils;
+import de.macbury.expanse.core.entities.TelegramMetrics;
+
+/**
+ * Display {@link TelegramMetrics} of {@link de.macbury.expanse.core.entities.Messages}. Refreshed every second.
+ * F3 toggles metrics with trace, F4 dumps trace to local file
+ */
+public class TelegramMetricsLabel extends Label {
+  private static final int TOGGLE_KEY = Input.Keys.F3;
+  private static final int DUMP_KEY   = Input.Keys.F4;
+  private TelegramMetrics metrics;
+  private float time;
+
+  public TelegramMetricsLabel(TelegramMetrics metrics, Skin skin) {
+    super("", skin, "fpsLabel");
+    this.metrics = metrics;
+    this.time    = 1.0f;
+    setTouchable(Touchable.disabled);
+    setVisible(metrics.isEnabled());
+  }
+
+  @Override
+  public void act(float delta) {
+    super.act(delta);
+    time += delta;
+
+    if (Gdx.input.isKeyJustPressed(TOGGLE_KEY)) {
+      metrics.setEnabled(!metrics.isEnabled());
+      if (metrics.isEnabled() && !metrics.isTracing())
+        metrics.setTraceSize(TelegramMetrics.DEFAULT_TRACE_SIZE);
+      setVisible(metrics.isEnabled());
+      time = 1.0f;
+    }
+
+    if (Gdx.input.isKeyJustPressed(DUMP_KEY) && metrics.isTracing()) {
+      String fileName = "telegrams-" + TimeUtils.millis() + ".tsv";
+      metrics.dumpTrace(Gdx.files.local(fileName));
+      Gdx.app.log("TelegramMetrics", "Trace saved to " + fileName);
+    }
+
+    if (time >= 1.0f && isVisible()) {
+      time = 0.0f;
+      setText(metrics.toString());
+    }
+  }
+}
@@ -14,6 +14,6 @@ public class TurnKeyword extends BaseKeyword {
   }
 
   public void turn(int degrees) {
-    dispatchInNextFrame(entity, TelegramEvents.InstructionTurn, degrees);
+    pushInstruction(TelegramEvents.InstructionTurn, degrees);
   }
 }
@@ -14,6 +14,6 @@ public class WaitKeyword extends BaseKeyword {
   }
 
   public void wait(float waitInSeconds) {
-    dispatchInNextFrame(entity, TelegramEvents.InstructionWait, waitInSeconds);
+    pushInstruction(TelegramEvents.InstructionWait, waitInSeconds);
   }
 }
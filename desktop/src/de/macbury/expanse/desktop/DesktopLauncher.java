@@ -3,9 +3,23 @@ package de.macbury.expanse.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import de.macbury.expanse.Expanse;
+import de.macbury.expanse.core.entities.TelegramMetrics;
+import de.macbury.expanse.core.scripts.ScriptScheduler;
 
 public class DesktopLauncher {
   private static final boolean START_FULLSCREEN = false;
+  /**
+   * Run each robot script on own virtual thread(if jvm supports them) instead of shared worker pool
+   */
+  private static final boolean SCRIPT_THREAD_PER_ROBOT = false;
+  /**
+   * Run scripts only in fixed simulation ticks so every run plays out the same, for benchmarks and replays
+   */
+  private static final boolean DETERMINISTIC_SIMULATION = false;
+  /**
+   * Measure every telegram from start and show it in hud, can be also toggled in game with F3
+   */
+  private static final boolean TELEGRAM_METRICS = false;
 
   public static void main (String[] arg) {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
@@ -26,6 +40,13 @@ public class DesktopLauncher {
 		config.useGL30    = false;
 
 		config.title    	= "Expanse v"+ Expanse.VERSION;
+
+    if (SCRIPT_THREAD_PER_ROBOT)
+      ScriptScheduler.setDefaultMode(ScriptScheduler.Mode.ThreadPerScript);
+    if (DETERMINISTIC_SIMULATION)
+      ScriptScheduler.setDefaultMode(ScriptScheduler.Mode.Deterministic);
+    TelegramMetrics.setDefaultEnabled(TELEGRAM_METRICS);
+
 		new LwjglApplication(new Expanse(), config);
 	}
 }